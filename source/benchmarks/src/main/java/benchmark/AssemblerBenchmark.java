@@ -0,0 +1,174 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 어셈블러 파이프라인의 단계별 JMH 벤치마크.
+ * ProgramGenerator로 만든 합성 프로그램(lines 줄, sections개의 control section)에 대해
+ * InstTable 로딩, 입력 파일 읽기, Token 분리, pass1, pass2, makeCodeList, print* 출력을 각각 측정한다.
+ * streamingPass1은 입력 파일을 memory-map하여 읽으면서 바로 토큰을 저장하는 pass1(inputFile)을 측정한다.
+ * <p>
+ * 사용 예 : java -jar benchmarks/target/benchmarks.jar -p lines=100000 -p sections=50 pass1 <br>
+ * 생성기 설정 : java -jar benchmarks/target/benchmarks.jar -p lines=100000 -p sections=10 -p options="literalRatio=0.5 literalsPerPool=2000"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssemblerBenchmark {
+
+    /**
+     * 합성 프로그램과 inst.data를 임시 파일로 준비한다. 파라미터 조합마다 한 번 만든다.
+     */
+    @State(Scope.Benchmark)
+    public static class Program {
+        @Param({"1000", "100000", "1000000"})
+        public int lines;
+        @Param({"1", "50", "500"})
+        public int sections;
+        /** ProgramGenerator 설정 (key=value를 공백으로 구분) */
+        @Param({""})
+        public String options;
+
+        public File instFile;
+        public File inputFile;
+        public List<String> source;
+
+        @Setup(Level.Trial)
+        public void setup() throws Throwable {
+            instFile = Pipeline.instFile();
+            inputFile = File.createTempFile("input", ".txt");
+            source = Pipeline.generate(instFile.getPath(), lines, sections, options, inputFile.getPath());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Pipeline.delete(instFile, inputFile);
+        }
+
+        /**
+         * 입력 파일까지 읽은 새 Assembler
+         */
+        Object load() throws Throwable {
+            Object assembler = Pipeline.newAssembler(instFile.getPath());
+            Pipeline.loadInputFile(assembler, inputFile.getPath());
+            return assembler;
+        }
+    }
+
+    /**
+     * pass1 측정용. 매 호출마다 입력만 읽은 새 Assembler를 준비한다.
+     */
+    @State(Scope.Thread)
+    public static class Loaded {
+        Object assembler;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) throws Throwable {
+            assembler = program.load();
+        }
+    }
+
+    /**
+     * pass2 측정용. 매 호출마다 pass1까지 끝난 새 Assembler를 준비한다.
+     */
+    @State(Scope.Thread)
+    public static class Located {
+        Object assembler;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) throws Throwable {
+            assembler = program.load();
+            Pipeline.pass1(assembler);
+        }
+    }
+
+    /**
+     * 레코드 생성과 출력 측정용. pass2까지 끝난 Assembler를 한 번 만들고, 출력 파일은 임시 파일에 쓴다.
+     */
+    @State(Scope.Thread)
+    public static class Assembled {
+        Object assembler;
+        File outputFile;
+
+        @Setup(Level.Trial)
+        public void setup(Program program) throws Throwable {
+            assembler = program.load();
+            Pipeline.pass1(assembler);
+            Pipeline.pass2(assembler);
+            outputFile = File.createTempFile("output", ".txt");
+        }
+
+        @Setup(Level.Invocation)
+        public void clearCodeList() throws Throwable {
+            Pipeline.codeList(assembler).clear();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Pipeline.delete(outputFile);
+        }
+    }
+
+    @Benchmark
+    public Object instTableLoad(Program program) throws Throwable {
+        return Pipeline.newInstTable(program.instFile.getPath());
+    }
+
+    @Benchmark
+    public Object loadInputFile(Program program) throws Throwable {
+        return program.load();
+    }
+
+    @Benchmark
+    public Object streamingPass1(Program program) throws Throwable {
+        Object assembler = Pipeline.newAssembler(program.instFile.getPath());
+        Pipeline.pass1(assembler, program.inputFile.getPath());
+        return assembler;
+    }
+
+    @Benchmark
+    public void tokenParsing(Program program, Blackhole blackhole) throws Throwable {
+        for (String line : program.source)
+            blackhole.consume(Pipeline.newToken(line));
+    }
+
+    @Benchmark
+    public Object pass1(Loaded loaded) throws Throwable {
+        Pipeline.pass1(loaded.assembler);
+        return loaded.assembler;
+    }
+
+    @Benchmark
+    public Object pass2(Located located) throws Throwable {
+        Pipeline.pass2(located.assembler);
+        return located.assembler;
+    }
+
+    @Benchmark
+    public Object makeCodeList(Assembled assembled) throws Throwable {
+        Pipeline.makeCodeList(assembled.assembler);
+        return assembled.assembler;
+    }
+
+    @Benchmark
+    public void printSymbolTable(Assembled assembled) throws Throwable {
+        Pipeline.printSymbolTable(assembled.assembler, assembled.outputFile.getPath());
+    }
+
+    @Benchmark
+    public void printLiteralTable(Assembled assembled) throws Throwable {
+        Pipeline.printLiteralTable(assembled.assembler, assembled.outputFile.getPath());
+    }
+
+    @Benchmark
+    public void printObjectCode(Assembled assembled) throws Throwable {
+        Pipeline.printObjectCode(assembled.assembler, assembled.outputFile.getPath());
+    }
+}
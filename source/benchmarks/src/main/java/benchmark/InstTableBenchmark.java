@@ -0,0 +1,70 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InstTable 검색의 JMH 벤치마크.
+ * 기존 방식(operator.replace("+", "") 후 instMap.get)과 perfect hash를 사용하는 search()를 비교한다.
+ * 검색할 operator는 모든 명령어, format 4 표기, 명령어가 아닌 지시어를 섞은 것이며, 호출 한 번에 모두 한 번씩 검색한다.
+ * <p>
+ * 사용 예 : java -jar benchmarks/target/benchmarks.jar InstTableBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstTableBenchmark {
+    private static final String[] DIRECTIVES = {"START", "CSECT", "EXTDEF", "EXTREF", "RESW", "RESB", "BYTE", "WORD", "LTORG", "EQU", "END"};
+
+    private Object instTable;
+    private Map<String, ?> instMap;
+    private String[] operators;
+
+    /**
+     * InstTable을 읽고 검색할 operator를 만든다. 두 방식의 결과가 같은지 먼저 확인한다.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        File instFile = Pipeline.instFile();
+        try {
+            instTable = Pipeline.newInstTable(instFile.getPath());
+            instMap = Pipeline.instMap(instTable);
+        } finally {
+            Pipeline.delete(instFile);
+        }
+
+        ArrayList<String> operatorList = new ArrayList<>();
+        for (String name : instMap.keySet()) {
+            operatorList.add(name);
+            operatorList.add("+" + name);
+        }
+        for (String directive : DIRECTIVES)
+            operatorList.add(directive);
+        operators = operatorList.toArray(new String[0]);
+
+        for (String operator : operators) {
+            if (instMap.get(operator.replace("+", "")) != Pipeline.searchInstruction(instTable, operator))
+                throw new IllegalStateException("mismatch : " + operator);
+        }
+    }
+
+    @Benchmark
+    public void hashMap(Blackhole blackhole) {
+        for (String operator : operators)
+            blackhole.consume(instMap.get(operator.replace("+", "")));
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) throws Throwable {
+        for (String operator : operators)
+            blackhole.consume(Pipeline.searchInstruction(instTable, operator));
+    }
+}
@@ -0,0 +1,63 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LinkingLoader의 JMH 벤치마크.
+ * ProgramGenerator로 만든 합성 프로그램(sections개의 control section, section마다 약 linesPerSection 줄)을 어셈블한
+ * object program을 메모리에 두고, 읽기(ESTAB 구성과 T 레코드 배치)와 M 레코드 적용까지를 측정한다.
+ * section 수를 늘려도 section당 시간이 일정하면 연결 시간이 선형이다.
+ * recordLength는 어셈블할 때 T 레코드 하나의 최대 byte 수(10진수)이다. 길수록 레코드 수가 줄어든다.
+ * <p>
+ * 사용 예 : java -jar benchmarks/target/benchmarks.jar LinkingLoaderBenchmark -p sections=10000,50000 -p recordLength=255
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkingLoaderBenchmark {
+    @Param({"1000", "10000", "50000"})
+    public int sections;
+    @Param({"40"})
+    public int linesPerSection;
+    @Param({"30", "255"})
+    public int recordLength;
+
+    private byte[] objectProgram;
+
+    /**
+     * 합성 프로그램을 어셈블하여 object program을 메모리에 읽어둔다. 파라미터 조합마다 한 번 만든다.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        File instFile = Pipeline.instFile();
+        File inputFile = File.createTempFile("input", ".txt");
+        File outputFile = File.createTempFile("output", ".txt");
+        try {
+            Pipeline.generate(instFile.getPath(), sections * linesPerSection, sections, "", inputFile.getPath());
+            Object assembler = Pipeline.newAssembler(instFile.getPath());
+            Pipeline.setMaxRecordLength(assembler, recordLength);
+            Pipeline.loadInputFile(assembler, inputFile.getPath());
+            Pipeline.pass1(assembler);
+            Pipeline.pass2(assembler);
+            Pipeline.printObjectCode(assembler, outputFile.getPath());
+            objectProgram = Files.readAllBytes(outputFile.toPath());
+        } finally {
+            Pipeline.delete(instFile, inputFile, outputFile);
+        }
+    }
+
+    @Benchmark
+    public Object link() throws Throwable {
+        Object loader = Pipeline.newLinkingLoader(0);
+        Pipeline.loadObjectProgram(loader, objectProgram);
+        Pipeline.link(loader);
+        return loader;
+    }
+}
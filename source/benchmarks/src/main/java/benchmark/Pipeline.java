@@ -0,0 +1,214 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 기본 패키지에 있는 어셈블러 클래스들을 MethodHandle로 호출하는 연결 클래스.
+ * JMH는 기본 패키지의 벤치마크를 허용하지 않고, 이름 있는 패키지에서는 기본 패키지의 클래스를 import할 수 없기 때문에 사용한다.
+ * handle은 static final이므로 JIT에서 직접 호출과 같이 inline된다.
+ */
+final class Pipeline {
+    private static final MethodHandle NEW_ASSEMBLER;
+    private static final MethodHandle LOAD_INPUT_FILE;
+    private static final MethodHandle PASS1;
+    private static final MethodHandle STREAM_PASS1;
+    private static final MethodHandle PASS2;
+    private static final MethodHandle MAKE_CODE_LIST;
+    private static final MethodHandle CODE_LIST;
+    private static final MethodHandle SET_MAX_RECORD_LENGTH;
+    private static final MethodHandle PRINT_SYMBOL_TABLE;
+    private static final MethodHandle PRINT_LITERAL_TABLE;
+    private static final MethodHandle PRINT_OBJECT_CODE;
+    private static final MethodHandle NEW_INST_TABLE;
+    private static final MethodHandle INST_MAP;
+    private static final MethodHandle SEARCH_INSTRUCTION;
+    private static final MethodHandle NEW_TOKEN;
+    private static final MethodHandle NEW_GENERATOR;
+    private static final MethodHandle SET_OPTION;
+    private static final MethodHandle GENERATE;
+    private static final MethodHandle WRITE;
+    private static final MethodHandle NEW_LINKING_LOADER;
+    private static final MethodHandle LOAD_OBJECT_PROGRAM;
+    private static final MethodHandle LINK;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> assembler = Class.forName("Assembler");
+            Class<?> generator = Class.forName("ProgramGenerator");
+            NEW_ASSEMBLER = lookup.unreflectConstructor(assembler.getDeclaredConstructor(String.class));
+            LOAD_INPUT_FILE = method(lookup, assembler, "loadInputFile", String.class);
+            PASS1 = method(lookup, assembler, "pass1");
+            STREAM_PASS1 = method(lookup, assembler, "pass1", String.class);
+            PASS2 = method(lookup, assembler, "pass2");
+            MAKE_CODE_LIST = method(lookup, assembler, "makeCodeList");
+            PRINT_SYMBOL_TABLE = method(lookup, assembler, "printSymbolTable", String.class);
+            PRINT_LITERAL_TABLE = method(lookup, assembler, "printLiteralTable", String.class);
+            PRINT_OBJECT_CODE = method(lookup, assembler, "printObjectCode", String.class);
+            java.lang.reflect.Field codeList = assembler.getDeclaredField("codeList");
+            codeList.setAccessible(true);
+            CODE_LIST = lookup.unreflectGetter(codeList);
+            java.lang.reflect.Field maxRecordLength = assembler.getDeclaredField("maxRecordLength");
+            maxRecordLength.setAccessible(true);
+            SET_MAX_RECORD_LENGTH = lookup.unreflectSetter(maxRecordLength);
+            Class<?> instTable = Class.forName("InstTable");
+            NEW_INST_TABLE = lookup.findConstructor(instTable, MethodType.methodType(void.class, String.class));
+            java.lang.reflect.Field instMap = instTable.getDeclaredField("instMap");
+            instMap.setAccessible(true);
+            INST_MAP = lookup.unreflectGetter(instMap);
+            SEARCH_INSTRUCTION = method(lookup, instTable, "search", String.class).asType(MethodType.methodType(Object.class, Object.class, String.class));
+            //Token은 패키지 전용 클래스이므로 접근을 허용한 뒤 handle을 만든다
+            java.lang.reflect.Constructor<?> token = Class.forName("Token").getDeclaredConstructor(String.class);
+            token.setAccessible(true);
+            NEW_TOKEN = lookup.unreflectConstructor(token).asType(MethodType.methodType(Object.class, String.class));
+            NEW_GENERATOR = lookup.findConstructor(generator, MethodType.methodType(void.class, instTable, int.class, int.class));
+            SET_OPTION = lookup.findVirtual(generator, "setOption", MethodType.methodType(generator, String.class, String.class));
+            GENERATE = lookup.findVirtual(generator, "generate", MethodType.methodType(List.class));
+            WRITE = lookup.findStatic(generator, "write", MethodType.methodType(void.class, String.class, List.class));
+            Class<?> loader = Class.forName("LinkingLoader");
+            NEW_LINKING_LOADER = lookup.findConstructor(loader, MethodType.methodType(void.class, int.class));
+            LOAD_OBJECT_PROGRAM = method(lookup, loader, "load", byte[].class);
+            LINK = method(lookup, loader, "link");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Pipeline() {
+    }
+
+    /**
+     * 패키지 전용 메소드도 호출할 수 있도록 접근을 허용한 handle을 만든다.
+     */
+    private static MethodHandle method(MethodHandles.Lookup lookup, Class<?> owner, String name, Class<?>... parameters)
+            throws ReflectiveOperationException {
+        java.lang.reflect.Method method = owner.getDeclaredMethod(name, parameters);
+        method.setAccessible(true);
+        return lookup.unreflect(method);
+    }
+
+    static Object newAssembler(String instFile) throws Throwable {
+        return NEW_ASSEMBLER.invoke(instFile);
+    }
+
+    static void loadInputFile(Object assembler, String inputFile) throws Throwable {
+        LOAD_INPUT_FILE.invoke(assembler, inputFile);
+    }
+
+    static void pass1(Object assembler) throws Throwable {
+        PASS1.invoke(assembler);
+    }
+
+    static void pass1(Object assembler, String inputFile) throws Throwable {
+        STREAM_PASS1.invoke(assembler, inputFile);
+    }
+
+    static void pass2(Object assembler) throws Throwable {
+        PASS2.invoke(assembler);
+    }
+
+    static void makeCodeList(Object assembler) throws Throwable {
+        MAKE_CODE_LIST.invoke(assembler);
+    }
+
+    static void setMaxRecordLength(Object assembler, int maxRecordLength) throws Throwable {
+        SET_MAX_RECORD_LENGTH.invoke(assembler, maxRecordLength);
+    }
+
+    static List<?> codeList(Object assembler) throws Throwable {
+        return (List<?>) CODE_LIST.invoke(assembler);
+    }
+
+    static void printSymbolTable(Object assembler, String fileName) throws Throwable {
+        PRINT_SYMBOL_TABLE.invoke(assembler, fileName);
+    }
+
+    static void printLiteralTable(Object assembler, String fileName) throws Throwable {
+        PRINT_LITERAL_TABLE.invoke(assembler, fileName);
+    }
+
+    static void printObjectCode(Object assembler, String fileName) throws Throwable {
+        PRINT_OBJECT_CODE.invoke(assembler, fileName);
+    }
+
+    static Object newInstTable(String instFile) throws Throwable {
+        return NEW_INST_TABLE.invoke(instFile);
+    }
+
+    /**
+     * InstTable의 instMap (명령어 이름 -> Instruction)
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, ?> instMap(Object instTable) throws Throwable {
+        return (Map<String, ?>) INST_MAP.invoke(instTable);
+    }
+
+    static Object searchInstruction(Object instTable, String operator) throws Throwable {
+        return (Object) SEARCH_INSTRUCTION.invokeExact(instTable, operator);
+    }
+
+    static Object newToken(String line) throws Throwable {
+        return (Object) NEW_TOKEN.invokeExact(line);
+    }
+
+    static Object newLinkingLoader(int progAddr) throws Throwable {
+        return NEW_LINKING_LOADER.invoke(progAddr);
+    }
+
+    static void loadObjectProgram(Object loader, byte[] objectProgram) throws Throwable {
+        LOAD_OBJECT_PROGRAM.invoke(loader, objectProgram);
+    }
+
+    static void link(Object loader) throws Throwable {
+        LINK.invoke(loader);
+    }
+
+    /**
+     * jar에 포함된 inst.data를 임시 파일로 복사한다. 다 쓴 뒤에는 delete로 지운다.
+     */
+    static File instFile() throws IOException {
+        File instFile = File.createTempFile("inst", ".data");
+        try (InputStream in = Pipeline.class.getResourceAsStream("/inst.data")) {
+            Files.copy(in, instFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return instFile;
+    }
+
+    /**
+     * 벤치마크가 만든 임시 파일들을 지운다. InstTable이 파일 옆에 만든 캐시(.bin)도 함께 지운다.
+     */
+    static void delete(File... files) {
+        for (File file : files) {
+            file.delete();
+            new File(file.getPath() + ".bin").delete();
+        }
+    }
+
+    /**
+     * ProgramGenerator로 합성 프로그램을 만들어 파일에 쓰고, 각 줄을 리턴한다.
+     *
+     * @param options : 공백으로 구분한 key=value 형태의 생성기 설정
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> generate(String instFile, int lines, int sections, String options, String fileName) throws Throwable {
+        Object generator = NEW_GENERATOR.invoke(newInstTable(instFile), lines, sections);
+        for (String option : options.trim().split("\\s+")) {
+            if (!option.isEmpty()) {
+                String[] pair = option.split("=", 2);
+                SET_OPTION.invoke(generator, pair[0], pair[1]);
+            }
+        }
+        List<String> program = (List<String>) GENERATE.invoke(generator);
+        WRITE.invoke(fileName, program);
+        return program;
+    }
+}
@@ -0,0 +1,100 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SymbolTable 성능의 JMH 벤치마크.
+ * symbols개의 label을 가지는 하나의 section으로 된 프로그램에 대해 pass1, pass2를 측정한다.
+ * 각 줄은 다른 label을 operand로 참조하므로 pass2에서도 symbol 검색이 일어난다.
+ * label 수를 늘려도 label당 시간이 일정하면 symbol 등록과 검색이 상수 시간이다.
+ * <p>
+ * 사용 예 : java -jar benchmarks/target/benchmarks.jar SymbolTableBenchmark -p symbols=1000,100000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SymbolTableBenchmark {
+
+    /**
+     * 프로그램과 inst.data를 임시 파일로 준비한다. 파라미터마다 한 번 만든다.
+     */
+    @State(Scope.Benchmark)
+    public static class Program {
+        @Param({"1000", "10000", "100000"})
+        public int symbols;
+
+        public File instFile;
+        public File inputFile;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            instFile = Pipeline.instFile();
+            inputFile = File.createTempFile("symtab_bench", ".txt");
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(inputFile))) {
+                writer.write("BENCH\tSTART\t0\n");
+                for (int i = 0; i < symbols; i++)
+                    writer.write(String.format("L%d\tLDA\tL%d\n", i, (int) ((i * 7919L) % symbols)));
+                writer.write("\tRSUB\t\tRETURN\n");
+                writer.write("\tEND\tL0\n");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Pipeline.delete(instFile, inputFile);
+        }
+
+        /**
+         * 입력 파일까지 읽은 새 Assembler
+         */
+        Object load() throws Throwable {
+            Object assembler = Pipeline.newAssembler(instFile.getPath());
+            Pipeline.loadInputFile(assembler, inputFile.getPath());
+            return assembler;
+        }
+    }
+
+    /**
+     * pass1 측정용. 매 호출마다 입력만 읽은 새 Assembler를 준비한다.
+     */
+    @State(Scope.Thread)
+    public static class Loaded {
+        Object assembler;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) throws Throwable {
+            assembler = program.load();
+        }
+    }
+
+    /**
+     * pass2 측정용. 매 호출마다 pass1까지 끝난 새 Assembler를 준비한다.
+     */
+    @State(Scope.Thread)
+    public static class Located {
+        Object assembler;
+
+        @Setup(Level.Invocation)
+        public void setup(Program program) throws Throwable {
+            assembler = program.load();
+            Pipeline.pass1(assembler);
+        }
+    }
+
+    @Benchmark
+    public Object pass1(Loaded loaded) throws Throwable {
+        Pipeline.pass1(loaded.assembler);
+        return loaded.assembler;
+    }
+
+    @Benchmark
+    public Object pass2(Located located) throws Throwable {
+        Pipeline.pass2(located.assembler);
+        return located.assembler;
+    }
+}
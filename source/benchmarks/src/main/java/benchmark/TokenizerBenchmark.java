@@ -0,0 +1,81 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token 분리 과정의 JMH 벤치마크.
+ * 같은 합성 프로그램(lines 줄)을 기존 방식(줄과 operand를 String.split으로 나누는 방식)과 Token.parsing으로 각각 분리한다.
+ * 할당량은 JMH의 gc profiler로 측정한다. gc.alloc.rate.norm이 프로그램 전체를 한 번 분리할 때 할당한 byte 수이다.
+ * <p>
+ * 사용 예 : java -jar benchmarks/target/benchmarks.jar TokenizerBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+    @Param({"100000"})
+    public int lines;
+    @Param({"50"})
+    public int sections;
+
+    private String[] source;
+
+    /**
+     * 합성 프로그램을 만들어 각 줄을 메모리에 읽어둔다. 파라미터 조합마다 한 번 만든다.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        File instFile = Pipeline.instFile();
+        File inputFile = File.createTempFile("input", ".txt");
+        try {
+            List<String> program = Pipeline.generate(instFile.getPath(), lines, sections, "", inputFile.getPath());
+            source = program.toArray(new String[0]);
+        } finally {
+            Pipeline.delete(instFile, inputFile);
+        }
+    }
+
+    @Benchmark
+    public void split(Blackhole blackhole) {
+        for (String line : source)
+            splitParse(line, blackhole);
+    }
+
+    @Benchmark
+    public void token(Blackhole blackhole) throws Throwable {
+        for (String line : source)
+            blackhole.consume(Pipeline.newToken(line));
+    }
+
+    /**
+     * 기존 방식의 분리. 주석 줄을 확인하는 split과 필드를 나누는 split을 따로 한다.
+     */
+    private static void splitParse(String line, Blackhole blackhole) {
+        String[] arr = line.split("\t");
+        if (arr[0].equals("."))
+            return;
+        String[] info = line.split("\t");
+        String label = info[0];
+        String operator = "";
+        String[] operand = new String[0];
+        String comment = "";
+        if (info.length >= 4)
+            comment = info[3];
+        if (info.length >= 3)
+            operand = info[2].split(",");
+        if (info.length >= 2)
+            operator = info[1];
+        blackhole.consume(label);
+        blackhole.consume(operator);
+        blackhole.consume(operand);
+        blackhole.consume(comment);
+    }
+}
@@ -1,7 +1,15 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
@@ -30,6 +38,7 @@ public class Assembler {
     InstTable instTable;
     /**
      * 읽어들인 input 파일의 내용을 한 줄 씩 저장하는 공간.
+     * streaming 방식의 pass1(inputFile)에서는 사용하지 않는다.
      */
     ArrayList<String> lineList;
     /**
@@ -49,6 +58,25 @@ public class Assembler {
      * 필요한 경우 String 대신 별도의 클래스를 선언하여 ArrayList를 교체해도 무방함.
      */
     ArrayList<String> codeList;
+    /**
+     * 단계별, section별 측정값을 모으는 공간. null이면 측정하지 않는다.
+     */
+    AssemblerMetrics metrics;
+    /**
+     * incremental 어셈블에 사용하는 section cache. null이면 모든 section을 어셈블한다.
+     * streaming 방식의 pass1(inputFile)에서만 사용한다.
+     */
+    SectionCache sectionCache;
+    /**
+     * T 레코드 하나의 최대 byte 수. (TextRecordPacker 참고)
+     */
+    int maxRecordLength = TextRecordPacker.DEFAULT_MAX_LENGTH;
+    /**
+     * true이면 section들을 fork-join pool에 나누지 않고 호출한 thread에서 순서대로 처리한다.
+     * AssemblerService처럼 바깥의 thread pool이 동시에 실행할 작업 수를 정하는 경우에 사용한다.
+     */
+    boolean sequential;
+
 
     /**
      * 클래스 초기화. instruction Table을 초기화와 동시에 세팅한다.
@@ -56,7 +84,17 @@ public class Assembler {
      * @param instFile : instruction 명세를 작성한 파일 이름.
      */
     public Assembler(String instFile) {
-        instTable = new InstTable(instFile);
+        this(new InstTable(instFile));
+    }
+
+    /**
+     * 클래스 초기화. 이미 읽어둔 instruction Table을 사용한다.
+     * InstTable은 읽기만 하므로 여러 Assembler가 동시에 공유해도 된다. (AssemblerService 참고)
+     *
+     * @param instTable : instruction 명세를 저장한 table
+     */
+    public Assembler(InstTable instTable) {
+        this.instTable = instTable;
         lineList = new ArrayList<>();
         symtabList = new ArrayList<>();
         literaltabList = new ArrayList<>();
@@ -66,35 +104,152 @@ public class Assembler {
 
     /**
      * 어셈블러의 메인 루틴
+     * 인자로 파일 이름이 주어지면 section별 메모리 이미지를 binary 형식으로 함께 출력한다.
+     * -metrics 파일이름 이 주어지면 단계별, section별 측정값을 JSON 형식으로 출력한다.
+     * -cache 폴더 가 주어지면 내용이 바뀌지 않은 section은 cache에 저장된 결과를 사용한다.
+     * 메모리 이미지는 모든 section의 object code가 필요하므로 함께 주어지면 cache를 사용하지 않는다.
+     * -onepass 가 주어지면 OnePassAssembler로 한 번만 읽으면서 object program을 출력한다. (메모리 이미지, cache는 사용하지 않는다)
+     * -record 길이(16진수) 가 주어지면 T 레코드 하나에 그 byte 수(4 ~ FF)까지 넣는다. 기본값은 1E이다.
+     * 알 수 없는 옵션이나 '-'로 시작하는 파일 이름, 두번째 파일 이름이 주어지면 사용법을 출력하고 끝낸다.
      */
     public static void main(String[] args) {
+        String imageFile = null;
+        String metricsFile = null;
+        String cacheDir = null;
+        boolean onePass = false;
+        int maxRecordLength = TextRecordPacker.DEFAULT_MAX_LENGTH;
+        String usage = "usage: java Assembler [-onepass] [-metrics file] [-cache dir] [-record hex] [imageFile]";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-onepass"))
+                onePass = true;
+            else if (args[i].equals("-metrics") && i + 1 < args.length)
+                metricsFile = args[++i];
+            else if (args[i].equals("-cache") && i + 1 < args.length)
+                cacheDir = args[++i];
+            else if (args[i].equals("-record") && i + 1 < args.length) {
+                try {
+                    maxRecordLength = TextRecordPacker.checkLength(Integer.parseInt(args[++i], 16));
+                } catch (IllegalArgumentException e) {       //NumberFormatException 포함
+                    System.err.println(e.getMessage());
+                    System.err.println(usage);
+                    return;
+                }
+            }
+            else if (!args[i].startsWith("-") && imageFile == null)
+                imageFile = args[i];
+            else {
+                System.err.println(usage);
+                return;
+            }
+        }
 
         Assembler assembler = new Assembler("inst.data");
-        assembler.loadInputFile("input.txt");
-        assembler.pass1();
+        assembler.maxRecordLength = maxRecordLength;
+        if (metricsFile != null)
+            assembler.metrics = new AssemblerMetrics();
+        if (cacheDir != null && imageFile == null) {
+            try {
+                assembler.sectionCache = new SectionCache(cacheDir, "inst.data", maxRecordLength);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (onePass) {
+            assembler.runPhase("onePass", () -> assembler.assembleOnePass("input.txt", "output_20160290.txt"));
+            assembler.runPhase("printSymbolTable", () -> assembler.printSymbolTable("symtab_20160290.txt"));
+            assembler.runPhase("printLiteralTable", () -> assembler.printLiteralTable("literaltab_20160290.txt"));
+            if (metricsFile != null)
+                assembler.metrics.write(metricsFile, assembler);
+            return;
+        }
+        assembler.runPhase("pass1", () -> assembler.pass1("input.txt"));
+
+        assembler.runPhase("printSymbolTable", () -> assembler.printSymbolTable("symtab_20160290.txt"));
+        assembler.runPhase("printLiteralTable", () -> assembler.printLiteralTable("literaltab_20160290.txt"));
+        assembler.runPhase("pass2", assembler::pass2);
+        assembler.runPhase("printObjectCode", () -> assembler.printObjectCode("output_20160290.txt"));
+        if (imageFile != null) {
+            String fileName = imageFile;
+            assembler.runPhase("printMemoryImage", () -> assembler.printMemoryImage(fileName));
+        }
+        if (metricsFile != null)
+            assembler.metrics.write(metricsFile, assembler);
 
-        assembler.printSymbolTable("symtab_20160290.txt");
-        assembler.printLiteralTable("literaltab_20160290.txt");
-        assembler.pass2();
-        assembler.printObjectCode("output_20160290.txt");
+    }
+
+    /**
+     * input 파일 하나를 어셈블하여 세 출력 파일을 만든다. (main과 같은 순서)
+     *
+     * @param inputFile      : input 파일 이름
+     * @param symtabFile     : symbol table을 저장할 파일 이름
+     * @param literaltabFile : literal table을 저장할 파일 이름
+     * @param outputFile     : object program을 저장할 파일 이름
+     */
+    void assemble(String inputFile, String symtabFile, String literaltabFile, String outputFile) {
+        pass1(inputFile);
+        printSymbolTable(symtabFile);
+        printLiteralTable(literaltabFile);
+        pass2();
+        printObjectCode(outputFile);
+    }
+
+    /**
+     * one-pass 방식으로 어셈블하여 object program을 출력한다.
+     * symtabList, literaltabList는 채워지지만 TokenList에는 토큰을 저장하지 않는다. (OnePassAssembler 참고)
+     *
+     * @param inputFile  : input 파일 이름
+     * @param outputFile : object program을 저장할 파일 이름
+     */
+    void assembleOnePass(String inputFile, String outputFile) {
+        try (OnePassAssembler onePass = new OnePassAssembler(this, outputFile)) {
+            onePass.assemble(inputFile);
+            if (metrics != null)
+                metrics.lines = onePass.lineCount();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 단계 하나를 실행한다. 측정 중이면 실행 시간과 할당량을 기록한다.
+     *
+     * @param name   : 단계 이름
+     * @param action : 실행할 작업
+     */
+    void runPhase(String name, Runnable action) {
+        if (metrics == null)
+            action.run();
+        else
+            metrics.measure(name, action);
+    }
 
+    /**
+     * section 하나에 대한 작업을 실행한다. 측정 중이면 section별로 기록한다.
+     *
+     * @param name    : 단계 이름
+     * @param section : 작업 대상 section
+     * @param action  : 실행할 작업
+     */
+    private void runSection(String name, TokenTable section, Runnable action) {
+        if (metrics == null)
+            action.run();
+        else
+            metrics.measureSection(name, section, action);
     }
 
     /**
      * inputFile을 읽어들여서 lineList에 저장한다.
+     * 파일은 SourceReader로 memory-map하여 읽으므로 platform charset과 관계없이 UTF-8(ASCII)로 읽는다.
      *
      * @param inputFile : input 파일 이름.
+     * @throws UncheckedIOException : 파일이 없거나 읽을 수 없는 경우
      */
-    private void loadInputFile(String inputFile) {
-        try {
-            File file = new File(inputFile);
-            FileReader fileReader = new FileReader(file);
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line;
-            while ((line = bufferedReader.readLine()) != null)
-                lineList.add(line);
+    void loadInputFile(String inputFile) {
+        try (SourceReader source = new SourceReader(inputFile)) {
+            while (source.nextLine())
+                lineList.add(source.lineString());
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(inputFile, e);
         }
     }
 
@@ -105,51 +260,133 @@ public class Assembler {
      * <p>
      * 주의사항 : SymbolTable과 TokenTable은 프로그램의 section별로 하나씩 선언되어야 한다.
      */
-    private void pass1() {
-        //TokenList 먼저 채우기
+    void pass1() {
+        //TokenList 먼저 채우기 (section 분리)
         getTokenList();
 
         //TokenList를 이용하여 symtabList와 literaltabList 완성하기
-        int locctr, prevLoc;
-        boolean hasLiteral = false;
-        //한 줄씩 읽으면서
-        for (TokenTable section : TokenList) {
-            locctr = prevLoc = 0;
-            for (Token line : section.tokenList) {
-                //주소 입력 및 계산
-                line.location = prevLoc;
-                line.byteSize = getLength(line);
-                locctr += line.byteSize;
-
-                //symtab 저장
-                if (line.label.length() > 0)
-                    addSymbol(TokenList.indexOf(section), line);
-
-                //littab 임시 저장
-                if (line.operand.length > 0 && line.operand[0].startsWith("=")) {
-                    hasLiteral = true;
-                    String literal = line.operand[0];
-                    literal = literal.replace("=C'", "");
-                    literal = literal.replace("=X'", "");
-                    literal = literal.replace("'", "");
-                    if (section.literalTab.search(literal) == -1) {
-                        if (line.operand[0].charAt(1) == 'X') {
-                            section.literalTab.putLiteral(literal, 1);
-                        } else      //'C'
-                            section.literalTab.putLiteral(literal, 2);
-                    }
-                }
-                //littab 저장
-                if (hasLiteral && (line.operator.equals("LTORG") || line.operator.equals("END"))) {
-                    hasLiteral = false;
-                    line.byteSize = addLiteral(TokenList.indexOf(section), locctr);
-                    locctr += line.byteSize;
+        //section마다 주소가 0부터 시작하고 table도 따로 가지므로 fork-join pool에서 동시에 처리한다
+        sections().forEach(section -> runSection("pass1", section, () -> locateSection(section)));
+    }
+
+    /**
+     * pass1 과정을 streaming 방식으로 수행한다.
+     * input 파일을 lineList에 저장하지 않고, 한 줄씩 읽는 즉시 토큰화하여 section별로 나눈다.
+     * section 하나를 다 읽으면 그 section의 주소 할당을 fork-join pool에 맡기고 다음 section을 읽는다.
+     * 파일은 SourceReader로 memory-map하며, 줄을 문자열로 바꾸지 않고 byte 범위 그대로 TokenTable에 저장한다.
+     * 그래서 Token 객체를 만들지 않고, 토큰의 주석은 버린다.
+     * sectionCache가 있으면 section의 문장들을 hash하여, cache에 있는 section은 주소 할당 대신 저장된 결과를 읽는다.
+     *
+     * @param inputFile : input 파일 이름.
+     */
+    void pass1(String inputFile) {
+        ArrayList<ForkJoinTask<?>> taskList = new ArrayList<>();
+        TokenTable section = null;
+        MessageDigest digest = null;
+        try (SourceReader source = new SourceReader(inputFile)) {
+            while (source.nextLine()) {
+                //주석과 빈 줄 무시
+                if (isComment(source))
+                    continue;
+                //새로운 Section이 시작되면 이전 Section의 주소 할당을 시작하고 새로 할당
+                if (isSectionStart(source)) {
+                    if (section != null)
+                        finishSection(section, digest, taskList);
+                    section = TokenList.get(addSection());
+                    if (sectionCache != null)
+                        digest = sectionCache.newDigest();
                 }
-                prevLoc = locctr;
+                if (digest != null)
+                    SectionCache.update(digest, source.line());
+                section.putToken(source);
             }
-            //Section이 바뀔 때 첫 라인에 Section의 길이 저장
-            section.tokenList.get(0).location = locctr;
+            if (section != null)
+                finishSection(section, digest, taskList);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (ForkJoinTask<?> task : taskList)
+            task.join();
+    }
+
+    /**
+     * 다 읽은 section의 주소 할당 작업을 넣는다. cache에 같은 내용의 section이 있으면 저장된 결과를 읽고 넘어간다.
+     *
+     * @param digest : section의 문장들을 넣은 MessageDigest. cache를 사용하지 않으면 null
+     */
+    private void finishSection(TokenTable section, MessageDigest digest, ArrayList<ForkJoinTask<?>> taskList) {
+        if (digest != null && sectionCache.load(section, digest))
+            return;
+        taskList.add(submitSection(section));
+    }
+
+    /**
+     * section의 주소 할당 작업을 common fork-join pool에 넣는다. sequential이면 바로 실행한다.
+     */
+    private ForkJoinTask<?> submitSection(TokenTable section) {
+        ForkJoinTask<?> task = ForkJoinTask.adapt(() -> runSection("pass1", section, () -> locateSection(section)));
+        if (sequential)
+            task.invoke();
+        else
+            ForkJoinPool.commonPool().execute(task);
+        return task;
+    }
+
+    /**
+     * section들을 처리할 stream. sequential이 아니면 common fork-join pool에서 동시에 처리하는 parallel stream이다.
+     */
+    private Stream<TokenTable> sections() {
+        return sequential ? TokenList.stream() : TokenList.parallelStream();
+    }
+
+    /**
+     * section 하나의 토큰들에 주소를 할당하고, symbol과 literal을 정리한 뒤 첫 라인에 section의 길이를 저장한다.
+     * 다른 section의 데이터는 건드리지 않는다.
+     *
+     * @param section : 주소를 할당할 section
+     */
+    private void locateSection(TokenTable section) {
+        int locctr = 0;
+        //한 줄씩 읽으면서
+        for (int i = 0; i < section.size(); i++) {
+            Token line = section.load(i);
+            locctr = locateToken(section, line, locctr);
+            section.store(i, line);
+        }
+        //모든 label의 주소가 정해졌으므로 EQU의 값을 정한다
+        resolveEquates(section);
+        //첫 라인에 Section의 길이 저장
+        section.setLocation(0, locctr);
+    }
+
+    /**
+     * 토큰에 주소를 할당하고 symbol과 literal을 정리한다. (pass1의 한 줄 처리)
+     *
+     * @param section : 토큰이 속한 section
+     * @param line    : 현재 라인
+     * @param locctr  : 현재 주소
+     * @return : 다음 라인의 주소
+     */
+    int locateToken(TokenTable section, Token line, int locctr) {
+        LiteralTable littab = section.literalTab;
+        //주소 입력 및 계산
+        line.location = locctr;
+        line.byteSize = getLength(line);
+        locctr += line.byteSize;
+
+        //symtab 저장
+        if (line.label.length() > 0)
+            addSymbol(section, line);
+
+        //littab 임시 저장 (이미 있는 literal이면 중복 추가되지 않는다)
+        if (line.operand.length > 0 && line.operand[0].startsWith("="))
+            littab.putOperand(line.operand[0]);
+        //littab 저장
+        if (littab.hasPending() && (line.operator.equals("LTORG") || line.operator.equals("END"))) {
+            line.byteSize = addLiteral(section, locctr);
+            locctr += line.byteSize;
         }
+        return locctr;
     }
 
     /**
@@ -158,24 +395,62 @@ public class Assembler {
     private void getTokenList() {
         int section = -1;
         for (String line : lineList) {
-            //Section 분리를 위한 임시 분리
-            String[] arr = line.split("\t");
-            //주석 무시
-            if (arr[0].equals("."))
+            //토큰화 (한 번만 분리한 결과로 Section도 구분한다)
+            Token token = new Token(line);
+            //주석과 빈 줄 무시
+            if (isComment(token))
                 continue;
             //새로운 Section이 시작되면 새로 할당
-            if (arr[1].equals("START") || arr[1].equals("CSECT")) {
-                section++;
-                symtabList.add(new SymbolTable());
-                literaltabList.add(new LiteralTable());
-                TokenList.add(new TokenTable(symtabList.get(section), instTable));
-                TokenList.get(section).literalTab = literaltabList.get(section);
-            }
-            //토큰화
-            TokenList.get(section).putToken(line);
+            if (isSectionStart(token))
+                section = addSection();
+            TokenList.get(section).putToken(token);
         }
     }
 
+    /**
+     * 새로운 section의 symbol table, literal table, token table을 할당한다.
+     *
+     * @return : 새 section의 index
+     */
+    private int addSection() {
+        int section = TokenList.size();
+        symtabList.add(new SymbolTable());
+        literaltabList.add(new LiteralTable());
+        TokenList.add(new TokenTable(symtabList.get(section), instTable));
+        TokenList.get(section).literalTab = literaltabList.get(section);
+        return section;
+    }
+
+    /**
+     * 주석 라인이거나 빈 라인이면 true
+     */
+    static boolean isComment(Token token) {
+        return token.label.equals(".") || (token.label.isEmpty() && token.operator.isEmpty());
+    }
+
+    /**
+     * 새로운 section을 시작하는 라인(START, CSECT)이면 true
+     */
+    static boolean isSectionStart(Token token) {
+        return token.operator.equals("START") || token.operator.equals("CSECT");
+    }
+
+    /**
+     * SourceReader가 읽고 있는 줄이 주석 라인이거나 빈 라인이면 true. (isComment(Token)과 같다)
+     */
+    static boolean isComment(SourceReader source) {
+        return source.matches(source.lineBegin, source.labelEnd, ".") || (source.labelEnd == source.lineBegin
+                && (source.fields < 2 || source.operatorBegin == source.operatorEnd));
+    }
+
+    /**
+     * SourceReader가 읽고 있는 줄이 새로운 section을 시작하는 라인(START, CSECT)이면 true
+     */
+    static boolean isSectionStart(SourceReader source) {
+        return source.fields >= 2 && (source.matches(source.operatorBegin, source.operatorEnd, "START")
+                || source.matches(source.operatorBegin, source.operatorEnd, "CSECT"));
+    }
+
     /**
      * 토큰을 가져와 토큰이 차지하는 메모리의 크기를 리턴
      *
@@ -185,9 +460,9 @@ public class Assembler {
     private int getLength(Token token) {
         int locctr = 0;
         //instTable에 있는 명령어라면 (주소 계산)
-        String op = token.operator.replace("+", "");
-        if (instTable.instMap.get(op) != null) {
-            locctr += instTable.instMap.get(op).format;
+        Instruction inst = instTable.search(token.operator);
+        if (inst != null) {
+            locctr += inst.format;
             if (token.operator.charAt(0) == '+')
                 locctr++;
         } else if (token.operator.equals("RESW"))
@@ -207,39 +482,89 @@ public class Assembler {
 
     /**
      * SymbolTable에 주어진 symbol을 저장한다
+     * EQU의 값은 뒤에서 정의되는 symbol을 참조할 수 있으므로, 식만 해석해두고 resolveEquates()에서 정한다.
      *
      * @param line : 현재 라인
      */
-    private void addSymbol(int section, Token line) {
-        SymbolTable symtab = TokenList.get(section).symTab;
-        symtab.putSymbol(line.label, 0);
-        //EQU이고
-        if (line.operator.equals("EQU")) {
-            //-연산을 하면
-            if (line.operand[0].contains("-")) {
-                String[] operand = line.operand[0].split("-");
-                int addr1 = symtab.search(operand[0]);
-                int addr2 = symtab.search(operand[1]);
-                if (addr1 != -1 && addr2 != -1) {
-                    symtab.modifySymbol(line.label, addr1 - addr2);
-                } else
-                    symtab.modifySymbol(line.label, line.location);
-                line.location = symtab.search(line.label);
+    private void addSymbol(TokenTable section, Token line) {
+        SymbolTable symtab = section.symTab;
+        symtab.putSymbol(line.label, line.location);
+        if (line.operator.equals("EQU"))
+            section.equateList.add(new Equate(line.label, Expression.compile(line.operand[0]), line.location));
+    }
+
+    /**
+     * section에 모아둔 EQU들의 값을 정한다.
+     * EQU가 다른 EQU의 label을 참조하는 관계를 간선으로 하는 그래프를 만들고, 위상 정렬 순서로 한 번씩만 계산한다.
+     * 따라서 정의 순서와 관계없이 EQU 수와 참조 수에 비례하는 시간에 끝난다.
+     * 결과가 상대 주소가 아니면 (식의 relocation이 0이면) symbol을 절대값으로 표시한다.
+     * EQU의 값은 어셈블할 때 정해져야 하므로 section에 정의되지 않은 symbol(EXTREF 포함)은 사용할 수 없다.
+     *
+     * @param section : label의 주소 할당이 끝난 section
+     * @throws IllegalStateException : EQU끼리 순환 참조하거나, 정의되지 않은 symbol을 참조하는 경우
+     */
+    void resolveEquates(TokenTable section) {
+        ArrayList<Equate> equateList = section.equateList;
+        int size = equateList.size();
+        if (size == 0)
+            return;
+        SymbolTable symtab = section.symTab;
+        HashMap<String, Integer> equateMap = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Equate equate = equateList.get(i);
+            equateMap.putIfAbsent(equate.label, i);
+            for (String name : equate.expression.nameList) {
+                if (symtab.indexOf(name) == -1)
+                    throw new IllegalStateException("undefined symbol in EQU " + equate.label + " : " + name);
             }
-            //현재 주소 저장(*)이면
-            else if (line.operand[0].equals("*")) {
-                symtab.modifySymbol(line.label, line.location);
+        }
+
+        //간선 j -> i : i번째 EQU가 j번째 EQU의 label을 참조한다. j별로 모아서 저장 (edgeBegin[j] ~ edgeBegin[j + 1])
+        int[] edgeBegin = new int[size + 1];
+        int[] indegree = new int[size];
+        for (int i = 0; i < size; i++) {
+            for (String name : equateList.get(i).expression.nameList) {
+                Integer j = equateMap.get(name);
+                if (j != null) {
+                    edgeBegin[j + 1]++;
+                    indegree[i]++;
+                }
             }
-            //단항이면
-            else {
-                int addr = symtab.search(line.operand[0]);
-                //외부 참조이면
-                if (addr == -1)
-                    addr = 0;
-                symtab.modifySymbol(line.label, addr);
+        }
+        for (int j = 0; j < size; j++)
+            edgeBegin[j + 1] += edgeBegin[j];
+        int[] edgeList = new int[edgeBegin[size]];
+        int[] fill = Arrays.copyOf(edgeBegin, size);
+        for (int i = 0; i < size; i++) {
+            for (String name : equateList.get(i).expression.nameList) {
+                Integer j = equateMap.get(name);
+                if (j != null)
+                    edgeList[fill[j]++] = i;
+            }
+        }
+
+        //참조하는 EQU가 모두 계산된 것부터 차례대로
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+        for (int i = 0; i < size; i++) {
+            if (indegree[i] == 0)
+                queue[tail++] = i;
+        }
+        while (head < tail) {
+            int i = queue[head++];
+            Equate equate = equateList.get(i);
+            symtab.modifySymbol(equate.label, equate.expression.evaluate(symtab, equate.location));
+            symtab.setAbsolute(equate.label, equate.expression.relocation(symtab) == 0);
+            for (int e = edgeBegin[i]; e < edgeBegin[i + 1]; e++) {
+                if (--indegree[edgeList[e]] == 0)
+                    queue[tail++] = edgeList[e];
             }
-        } else
-            symtab.modifySymbol(line.label, line.location);
+        }
+        for (int i = 0; tail < size && i < size; i++) {
+            if (indegree[i] > 0)
+                throw new IllegalStateException("circular EQU : " + equateList.get(i).label);
+        }
+        equateList.clear();
     }
 
     /**
@@ -248,25 +573,9 @@ public class Assembler {
      * @param locctr : 현재 주소
      * @return : 리터럴이 차지한 메모리 크기
      */
-    private int addLiteral(int section, int locctr) {
-        int size = 0;
-        LiteralTable littab = TokenList.get(section).literalTab;
+    private int addLiteral(TokenTable section, int locctr) {
         //현재 섹션에 임시 저장되어있던 리터럴들에게 주소 할당
-        for (String literal : littab.literalList) {
-            switch (littab.search(literal)) {
-                case 1:     //X인 경우
-                    littab.modifyLiteral(literal, locctr + size);
-                    size += literal.length() / 2;
-                    littab.typeList.add('X');
-                    break;
-                case 2:     //C인 경우
-                    littab.modifyLiteral(literal, locctr + size);
-                    size += literal.length();
-                    littab.typeList.add('C');
-                    break;
-            }
-        }
-        return size;
+        return section.literalTab.assignPool(locctr);
     }
 
     /**
@@ -274,22 +583,24 @@ public class Assembler {
      *
      * @param fileName : 저장되는 파일 이름
      */
-    private void printSymbolTable(String fileName) {
-        try {
-            File file = new File(fileName);
-            BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file));
-            //SYMTAB 출력
-            if (file.isFile() && file.canWrite()) {
-                for (SymbolTable section : symtabList) {
-                    for (int i = 0; i < section.symbolList.size(); i++)
-                        bufferedWriter.write(String.format("%-6s\t%04X\n", section.symbolList.get(i), section.locationList.get(i)));
-                    bufferedWriter.newLine();
-                }
-                bufferedWriter.close();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    void printSymbolTable(String fileName) {
+        writeFile(fileName, encodeSymbolTable());
+    }
+
+    /**
+     * 작성된 SymbolTable들을 출력형태의 byte 배열로 만든다.
+     *
+     * @return : symbol table 파일의 내용
+     */
+    byte[] encodeSymbolTable() {
+        StringBuilder builder = new StringBuilder();
+        //SYMTAB 출력
+        for (SymbolTable section : symtabList) {
+            for (int i = 0; i < section.size(); i++)
+                builder.append(String.format("%-6s\t%04X\n", section.symbolList.get(i), section.getLocation(i)));
+            builder.append(System.lineSeparator());
         }
+        return builder.toString().getBytes();
     }
 
     /**
@@ -297,106 +608,163 @@ public class Assembler {
      *
      * @param fileName : 저장되는 파일 이름
      */
-    private void printLiteralTable(String fileName) {
-        try {
-            File file = new File(fileName);
-            BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file));
-            //LITTAB 출력
-            if (file.isFile() && file.canWrite()) {
-                for (LiteralTable section : literaltabList) {
-                    for (int i = 0; i < section.literalList.size(); i++)
-                        bufferedWriter.write(String.format("%-6s\t%04X\n", section.literalList.get(i), section.locationList.get(i)));
-                    bufferedWriter.newLine();
-                }
-                bufferedWriter.close();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    void printLiteralTable(String fileName) {
+        writeFile(fileName, encodeLiteralTable());
+    }
+
+    /**
+     * 작성된 LiteralTable들을 출력형태의 byte 배열로 만든다.
+     *
+     * @return : literal table 파일의 내용
+     */
+    byte[] encodeLiteralTable() {
+        StringBuilder builder = new StringBuilder();
+        //LITTAB 출력
+        for (LiteralTable section : literaltabList) {
+            for (int i = 0; i < section.size(); i++)
+                builder.append(String.format("%-6s\t%04X\n", section.literalList.get(i), section.getLocation(i)));
+            builder.append(System.lineSeparator());
         }
+        return builder.toString().getBytes();
     }
 
     /**
      * pass2 과정을 수행한다.
      * 1) 분석된 내용을 바탕으로 object code를 생성하여 codeList에 저장.
      */
-    private void pass2() {
-        //한 줄씩 읽으면서
-        for (TokenTable section : TokenList) {
-            for (int i = 0; i < section.tokenList.size(); i++)
-                section.makeObjectCode(i);
-        }
+    void pass2() {
+        //section들은 서로 독립적이므로 fork-join pool에서 동시에 처리한다
+        sections()
+                .filter(section -> sectionCache == null || !sectionCache.isCached(section))
+                .forEach(section -> runSection("pass2", section, section::makeObjectCode));
     }
 
     /**
      * 작성된 codeList를 출력형태에 맞게 출력한다.
+     * codeList를 거치지 않고 ObjectProgramWriter로 파일에 바로 출력한다.
      *
      * @param fileName : 저장되는 파일 이름
      */
-    private void printObjectCode(String fileName) {
-        //최종 object code를 만들어 codeList에 저장
-        makeCodeList();
-        //만들어진 최종 object code 출력
-        try {
-            File file = new File(fileName);
-            BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file));
-            if (file.isFile() && file.canWrite()) {
-                for (String finalCode : codeList)
-                    bufferedWriter.write(finalCode);
-            }
-            bufferedWriter.close();
+    void printObjectCode(String fileName) {
+        writeFile(fileName, encodeObjectCode());
+    }
+
+    /**
+     * object program을 출력형태의 byte 배열로 만든다.
+     *
+     * @return : object program 파일의 내용
+     */
+    byte[] encodeObjectCode() {
+        //section별 레코드를 동시에 만든 뒤 원래 순서대로 잇는다
+        List<byte[]> sectionCodes = sections().map(this::encodeCachedSection).collect(Collectors.toList());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] code : sectionCodes)
+            out.writeBytes(code);
+        return out.toByteArray();
+    }
+
+    /**
+     * 만들어진 내용을 파일에 한 번에 쓴다.
+     *
+     * @param fileName : 저장되는 파일 이름
+     * @param data     : 파일의 내용
+     * @throws UncheckedIOException : 파일을 쓸 수 없는 경우
+     */
+    static void writeFile(String fileName, byte[] data) {
+        try (OutputStream out = new FileOutputStream(fileName)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(fileName, e);
+        }
+    }
+
+    /**
+     * section별 메모리 이미지를 binary 형식으로 출력한다. 형식은 MemoryImageWriter를 참고한다.
+     *
+     * @param fileName : 저장되는 파일 이름
+     */
+    void printMemoryImage(String fileName) {
+        try (MemoryImageWriter writer = new MemoryImageWriter(fileName)) {
+            for (TokenTable section : TokenList)
+                writer.writeSection(section);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * 최종 object code를 만들어 codeList에 저장한다.
-     */
-    private void makeCodeList() {
-        String objectCode = "";
-        int locctr, length, index;
-        //codeList에 최종 object code 생성
-        for (TokenTable section : TokenList) {
-            for (int i = 0; i < section.tokenList.size(); i++) {
-                Token token = section.getToken(i);
-                switch (token.record) {
-                    case 'H':
-                    case 'D':
-                    case 'R':
-                    case 'M':
-                    case 'E':
-                        objectCode = String.format("%c%s\n", token.record, section.getObjectCode(i));
-                        break;
-                    case 'T':
-                        //입력 전에 미리 길이 계산
-                        locctr = token.location + token.byteSize;
-                        length = token.byteSize;
-                        for (index = i + 1; index < section.tokenList.size(); index++) {
-                            token = section.getToken(index);
-                            if (token.record == 0)
-                                continue;
-                            else if (token.record != 'T')        //T 레코드가 아니면
-                                break;
-                            if (token.location != locctr)        //서로 떨어져있으면
-                                break;
-                            if (length + token.byteSize > 0x1E)  //제한된 길이를 초과하면
-                                break;
-                            locctr += token.byteSize;
-                            length += token.byteSize;
-                        }
-                        token = section.getToken(i);
-                        objectCode = String.format("%c%06X%02X", token.record, token.location, length);
-                        //T레코드 입력
-                        for (int j = i; j < index; j++)
-                            objectCode = objectCode.concat(String.format("%s", section.getObjectCode(j)));
-                        objectCode = objectCode.concat("\n");
-                        i = index - 1;
-                        break;
-                }
-                //codeList에 저장
-                this.codeList.add(objectCode);
+     * 최종 object code를 만들어 codeList에 저장한다. section 하나가 codeList의 한 원소가 된다.
+     * section별 레코드는 fork-join pool에서 동시에 만들고, 원래 순서대로 저장한다.
+     */
+    void makeCodeList() {
+        sections()
+                .map(section -> new String(encodeCachedSection(section), StandardCharsets.ISO_8859_1))
+                .forEachOrdered(this.codeList::add);
+    }
+
+    /**
+     * section 하나의 object program을 byte 배열로 만든다.
+     * cache에서 읽은 section이면 저장된 레코드를 사용하고, 새로 어셈블한 section이면 결과를 cache에 저장한다.
+     *
+     * @param section : 출력할 section
+     * @return : section의 레코드들
+     */
+    private byte[] encodeCachedSection(TokenTable section) {
+        if (sectionCache == null)
+            return encodeSection(section);
+        byte[] code = sectionCache.getCode(section);
+        if (code == null) {
+            code = encodeSection(section);
+            sectionCache.store(section, code);
+        }
+        return code;
+    }
+
+    /**
+     * section 하나의 object program을 byte 배열로 만든다.
+     *
+     * @param section : 출력할 section
+     * @return : section의 레코드들
+     */
+    private byte[] encodeSection(TokenTable section) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectProgramWriter writer = new ObjectProgramWriter(out)) {
+            writeSection(writer, section, maxRecordLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * section 하나의 object program을 레코드 단위로 writer에 쓴다. section의 끝에는 빈 줄을 넣는다.
+     * T 레코드는 TextRecordPacker로 토큰들을 한 번만 훑으며 묶는다.
+     *
+     * @param writer          : 레코드를 쓸 곳
+     * @param section         : 출력할 section
+     * @param maxRecordLength : T 레코드 하나의 최대 byte 수
+     */
+    private static void writeSection(ObjectProgramWriter writer, TokenTable section, int maxRecordLength) throws IOException {
+        TextRecordPacker packer = new TextRecordPacker(writer, maxRecordLength);
+        int size = section.size();
+        for (int i = 0; i < size; i++) {
+            char record = section.getRecord(i);
+            switch (record) {
+                case 'H':
+                case 'D':
+                case 'R':
+                case 'M':
+                case 'E':
+                    packer.flush();
+                    writer.record(record).text(section.getObjectCode(i)).endRecord();
+                    break;
+                case 'T':
+                    if (section.getCodeOffset(i) >= 0)
+                        packer.add(section.getLocation(i), section.codeBuffer, section.getCodeOffset(i), section.getByteSize(i));
+                    break;
             }
-            this.codeList.add("\n");
         }
+        packer.flush();
+        writer.endRecord();
     }
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 어셈블러의 단계별(phase), section별 측정값을 모으는 클래스.
+ * 실행 시간, 처리한 줄 수와 초당 줄 수, 할당한 메모리(ThreadMXBean), table 크기를 기록하고
+ * 빌드 서버에서 비교할 수 있도록 JSON 형식으로 출력한다.
+ * <p>
+ * 할당량은 HotSpot의 com.sun.management.ThreadMXBean으로 측정하며, 지원하지 않는 JVM에서는 -1이 기록된다.
+ * 단계 전체의 할당량은 측정 중에 살아있던 모든 thread의 증가량을 더한 값이므로, 측정 중에 종료된 thread의 할당은 빠진다.
+ */
+public class AssemblerMetrics {
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN;
+
+    static {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            THREAD_BEAN = (com.sun.management.ThreadMXBean) bean;
+            THREAD_BEAN.setThreadAllocatedMemoryEnabled(true);
+        } else
+            THREAD_BEAN = null;
+    }
+
+    /**
+     * 단계 하나의 측정값
+     */
+    static class Phase {
+        String name;
+        long wallNanos;
+        long allocatedBytes;
+    }
+
+    /**
+     * 측정한 단계들. 실행한 순서대로 저장한다.
+     */
+    final ArrayList<Phase> phaseList = new ArrayList<>();
+    /**
+     * section별 측정값. 단계 이름 -> (section -> {실행 시간, 할당량, 줄 수})
+     */
+    final Map<String, Map<TokenTable, long[]>> sectionMap = new ConcurrentHashMap<>();
+    /**
+     * 처리한 문장 수. TokenList에 토큰을 저장하지 않는 one-pass 어셈블에서 기록한다. -1이면 section별 기록에서 구한다
+     */
+    long lines = -1;
+
+    /**
+     * 단계 하나를 실행하며 시간과 할당량을 측정한다.
+     *
+     * @param name   : 단계 이름
+     * @param action : 실행할 작업
+     */
+    public void measure(String name, Runnable action) {
+        Map<Long, Long> before = allThreadAllocatedBytes();
+        long start = System.nanoTime();
+        action.run();
+        Phase phase = new Phase();
+        phase.wallNanos = System.nanoTime() - start;
+        phase.name = name;
+        if (before == null)
+            phase.allocatedBytes = -1;
+        else {
+            for (Map.Entry<Long, Long> entry : allThreadAllocatedBytes().entrySet())
+                phase.allocatedBytes += Math.max(0, entry.getValue() - before.getOrDefault(entry.getKey(), 0L));
+        }
+        synchronized (phaseList) {
+            phaseList.add(phase);
+        }
+    }
+
+    /**
+     * section 하나에 대한 작업을 실행하며 시간과 할당량을 측정한다.
+     * section의 작업은 한 thread에서 실행되므로 현재 thread의 할당량만 비교한다. 여러 thread에서 동시에 호출해도 된다.
+     *
+     * @param name    : 단계 이름
+     * @param section : 작업 대상 section
+     * @param action  : 실행할 작업
+     */
+    public void measureSection(String name, TokenTable section, Runnable action) {
+        long allocated = threadAllocatedBytes();
+        long start = System.nanoTime();
+        action.run();
+        long wallNanos = System.nanoTime() - start;
+        if (allocated != -1)
+            allocated = threadAllocatedBytes() - allocated;
+        sectionMap.computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+                .put(section, new long[]{wallNanos, allocated, section.size()});
+    }
+
+    /**
+     * 측정 결과를 JSON 형식으로 출력한다.
+     *
+     * @param fileName  : 저장되는 파일 이름
+     * @param assembler : 측정한 assembler (section 정보와 table 크기를 가져온다)
+     */
+    public void write(String fileName, Assembler assembler) {
+        try (Writer writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write(toJson(assembler));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 측정 결과를 JSON 문자열로 만든다.
+     * 줄 수는 pass1에서 기록한 section별 문장 수(주석 제외)의 합이다. one-pass 어셈블에서는 OnePassAssembler가 센 문장 수이다.
+     *
+     * @param assembler : 측정한 assembler
+     * @return : JSON 문자열
+     */
+    public String toJson(Assembler assembler) {
+        List<TokenTable> sections = assembler.TokenList;
+        Map<TokenTable, long[]> pass1 = sectionMap.getOrDefault("pass1", new HashMap<>());
+        long lines = this.lines;
+        if (lines < 0) {
+            lines = 0;
+            for (TokenTable section : sections) {
+                long[] value = pass1.get(section);
+                lines += value != null ? value[2] : section.size();
+            }
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"lines\": ").append(lines).append(",\n  \"phases\": [");
+        for (int i = 0; i < phaseList.size(); i++) {
+            Phase phase = phaseList.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": ").append(quote(phase.name))
+                    .append(", \"wallNanos\": ").append(phase.wallNanos)
+                    .append(", \"linesPerSecond\": ").append(perSecond(lines, phase.wallNanos))
+                    .append(", \"allocatedBytes\": ").append(phase.allocatedBytes).append('}');
+        }
+        json.append("\n  ],\n  \"sections\": [");
+        for (int i = 0; i < sections.size(); i++) {
+            TokenTable section = sections.get(i);
+            Token first = section.getToken(0);
+            long[] located = pass1.get(section);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"index\": ").append(i)
+                    .append(", \"name\": ").append(quote(first.label))
+                    .append(", \"lines\": ").append(located != null ? located[2] : section.size())
+                    .append(", \"length\": ").append(first.location)
+                    .append(", \"symbols\": ").append(section.symTab.size())
+                    .append(", \"literals\": ").append(section.literalTab.size())
+                    .append(", \"codeBytes\": ").append(section.codeLength);
+            for (Map.Entry<String, Map<TokenTable, long[]>> entry : sectionMap.entrySet()) {
+                long[] value = entry.getValue().get(section);
+                if (value != null)
+                    json.append(", ").append(quote(entry.getKey()))
+                            .append(": {\"wallNanos\": ").append(value[0])
+                            .append(", \"allocatedBytes\": ").append(value[1]).append('}');
+            }
+            json.append('}');
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : (long) (count * 1e9 / nanos);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                quoted.append('\\').append(c);
+            else if (c < 0x20)
+                quoted.append(String.format("\\u%04x", (int) c));
+            else
+                quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * 현재 thread가 지금까지 할당한 byte 수. 측정할 수 없으면 -1
+     */
+    private static long threadAllocatedBytes() {
+        return THREAD_BEAN == null ? -1 : THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 살아있는 모든 thread가 지금까지 할당한 byte 수. 측정할 수 없으면 null
+     */
+    private static Map<Long, Long> allThreadAllocatedBytes() {
+        if (THREAD_BEAN == null)
+            return null;
+        long[] ids = THREAD_BEAN.getAllThreadIds();
+        long[] bytes = THREAD_BEAN.getThreadAllocatedBytes(ids);
+        HashMap<Long, Long> map = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] != -1)
+                map.put(ids[i], bytes[i]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.*;
+
+/**
+ * 하나의 JVM에서 여러 input 파일을 어셈블하는 batch 서비스.
+ * inst.data는 처음에 한 번만 읽어 모든 작업이 InstTable을 공유하고,
+ * 작업마다 새 Assembler를 만들어 symtabList, literaltabList, TokenList는 각자 가진다.
+ * <p>
+ * 작업은 읽기 -> 어셈블 -> 쓰기의 세 단계 pipeline으로 실행된다.
+ * 읽기와 쓰기는 디스크를 기다리는 동안 CPU를 쓰지 않으므로 CPU 수보다 많은 I/O thread에서, 어셈블(pass1, pass2, 출력 내용 생성)은 worker thread에서 실행한다.
+ * 따라서 한 파일의 디스크 대기와 다른 파일의 pass가 겹쳐서 진행된다.
+ * 단계 사이의 대기열은 크기가 정해져 있고, 동시에 진행 중인 작업 수가 그 크기를 넘으면 submit이 기다리므로 대기 작업이 무한히 쌓이지 않는다.
+ * 한 작업의 세 출력 파일은 메모리에서 모두 만든 뒤 쓰기 단계에서 한 번에 쓴다.
+ * <p>
+ * 사용 예 : java AssemblerService [-threads n] outputDir input1.txt input2.txt ...
+ * 각 input 파일의 결과는 outputDir/(확장자를 뺀 파일 이름)/ 아래에 기존과 같은 이름으로 저장된다.
+ * 폴더 이름이 앞의 input과 같아지는 input(예: a/prog.txt와 b/prog.txt)은 결과를 덮어쓰지 않도록 어셈블하지 않는다.
+ * input을 읽거나 결과를 쓰지 못했거나 어셈블하지 않은 input이 있으면 0이 아닌 값으로 종료한다.
+ */
+public class AssemblerService implements AutoCloseable {
+    /**
+     * 모든 작업이 공유하는 instruction table
+     */
+    final InstTable instTable;
+    /**
+     * 어셈블 단계를 실행하는 worker pool
+     */
+    private final ThreadPoolExecutor workerPool;
+    /**
+     * 읽기와 쓰기 단계를 실행하는 I/O pool
+     */
+    private final ThreadPoolExecutor ioPool;
+    /**
+     * 동시에 진행 중인 작업 수의 제한. 각 pool의 대기열 크기와 같다
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * 작업 하나가 단계 사이에 넘기는 데이터
+     */
+    private static class Job {
+        Assembler assembler;
+        File directory;
+        byte[] symbolTable;
+        byte[] literalTable;
+        byte[] objectCode;
+    }
+
+    /**
+     * 클래스 초기화. instruction table을 읽고 worker pool을 만든다.
+     *
+     * @param instFile : instruction 명세를 작성한 파일 이름
+     * @param threads  : worker thread 수
+     */
+    public AssemblerService(String instFile, int threads) {
+        this(new InstTable(instFile), threads);
+    }
+
+    /**
+     * 클래스 초기화. 이미 읽어둔 instruction table을 공유한다.
+     * I/O thread는 worker thread의 4배, 동시에 진행 중인 작업은 worker thread의 8배까지 허용한다.
+     *
+     * @param instTable : 공유할 instruction table
+     * @param threads   : worker thread 수
+     */
+    public AssemblerService(InstTable instTable, int threads) {
+        this.instTable = instTable;
+        int limit = threads * 8;
+        inFlight = new Semaphore(limit);
+        workerPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(limit));
+        ioPool = new ThreadPoolExecutor(threads * 4, threads * 4, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(limit * 2));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int i = 0;
+        if (args.length > 1 && args[0].equals("-threads")) {
+            threads = Integer.parseInt(args[1]);
+            i = 2;
+        }
+        if (args.length - i < 2) {
+            System.err.println("usage: java AssemblerService [-threads n] outputDir input...");
+            return;
+        }
+        String outputDir = args[i++];
+
+        ArrayList<Future<Assembler>> jobList = new ArrayList<>();
+        ArrayList<String> inputList = new ArrayList<>();
+        HashSet<String> directorySet = new HashSet<>();
+        boolean failed = false;
+        try (AssemblerService service = new AssemblerService("inst.data", threads)) {
+            for (; i < args.length; i++) {
+                String name = new File(args[i]).getName();
+                int dot = name.lastIndexOf('.');
+                File directory = new File(outputDir, dot > 0 ? name.substring(0, dot) : name);
+                if (!directorySet.add(directory.getPath())) {
+                    System.err.println(args[i] + ": output directory " + directory + " is already used by another input");
+                    failed = true;
+                    continue;
+                }
+                inputList.add(args[i]);
+                jobList.add(service.submit(args[i], directory.getPath()));
+            }
+            for (int j = 0; j < jobList.size(); j++) {
+                try {
+                    jobList.get(j).get();
+                } catch (ExecutionException e) {
+                    System.err.println(inputList.get(j) + ": " + e.getCause());
+                    failed = true;
+                }
+            }
+        }
+        if (failed)
+            System.exit(1);
+    }
+
+    /**
+     * input 파일 하나의 어셈블 작업을 넣는다. 진행 중인 작업이 제한에 도달했으면 하나가 끝날 때까지 기다린다.
+     * 결과는 outputDir 아래에 symtab_20160290.txt, literaltab_20160290.txt, output_20160290.txt로 저장된다.
+     *
+     * @param inputFile : input 파일 이름
+     * @param outputDir : 결과를 저장할 폴더. 없으면 만든다
+     * @return : 작업이 끝나면 사용한 Assembler를 돌려주는 Future
+     */
+    public Future<Assembler> submit(String inputFile, String outputDir) {
+        inFlight.acquireUninterruptibly();
+        CompletableFuture<Assembler> future = CompletableFuture
+                .supplyAsync(() -> read(inputFile, outputDir), ioPool)
+                .thenApplyAsync(AssemblerService::assemble, workerPool)
+                .thenApplyAsync(AssemblerService::write, ioPool);
+        future.whenComplete((assembler, e) -> inFlight.release());
+        return future;
+    }
+
+    /**
+     * 읽기 단계. input 파일을 읽어 새 Assembler의 lineList에 저장한다.
+     * 읽을 수 없으면 UncheckedIOException으로 작업의 Future가 실패한다. (쓰기 단계도 같다)
+     */
+    private Job read(String inputFile, String outputDir) {
+        Job job = new Job();
+        job.assembler = new Assembler(instTable);
+        //동시에 실행하는 작업 수는 workerPool이 정하므로 한 작업의 section들은 worker thread 하나에서 처리한다
+        job.assembler.sequential = true;
+        job.assembler.loadInputFile(inputFile);
+        job.directory = new File(outputDir);
+        return job;
+    }
+
+    /**
+     * 어셈블 단계. pass1, pass2를 수행하고 세 출력 파일의 내용을 만든다.
+     */
+    private static Job assemble(Job job) {
+        Assembler assembler = job.assembler;
+        assembler.pass1();
+        job.symbolTable = assembler.encodeSymbolTable();
+        job.literalTable = assembler.encodeLiteralTable();
+        assembler.pass2();
+        job.objectCode = assembler.encodeObjectCode();
+        //출력이 끝난 원본 문장은 더 이상 필요 없다
+        assembler.lineList = new ArrayList<>();
+        return job;
+    }
+
+    /**
+     * 쓰기 단계. 만들어둔 세 출력 파일을 한 번에 쓴다.
+     */
+    private static Assembler write(Job job) {
+        job.directory.mkdirs();
+        Assembler.writeFile(new File(job.directory, "symtab_20160290.txt").getPath(), job.symbolTable);
+        Assembler.writeFile(new File(job.directory, "literaltab_20160290.txt").getPath(), job.literalTable);
+        Assembler.writeFile(new File(job.directory, "output_20160290.txt").getPath(), job.objectCode);
+        return job.assembler;
+    }
+
+    /**
+     * 넣은 작업을 모두 마친 뒤 pool들을 종료한다.
+     * 종료를 기다리는 중에 interrupt되면 남은 thread를 멈추고 interrupt 상태를 되돌려 호출한 쪽이 알 수 있게 한다.
+     */
+    @Override
+    public void close() {
+        //진행 중인 작업이 모두 끝날 때까지 기다린 뒤 종료
+        inFlight.acquireUninterruptibly(workerPool.getMaximumPoolSize() * 8);
+        workerPool.shutdown();
+        ioPool.shutdown();
+        try {
+            workerPool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            ioPool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            workerPool.shutdownNow();
+            ioPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
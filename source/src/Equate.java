@@ -0,0 +1,14 @@
+/**
+ * 주소 할당이 끝난 뒤에 값을 정하는 EQU 하나. (Assembler.resolveEquates 참고)
+ */
+class Equate {
+    String label;
+    Expression expression;
+    int location;       //EQU 라인의 주소 (*의 값)
+
+    Equate(String label, Expression expression, int location) {
+        this.label = label;
+        this.expression = expression;
+        this.location = location;
+    }
+}
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * EQU와 WORD의 operand로 쓰이는 식을 한 번만 해석하여 postfix 형태로 저장하는 클래스.
+ * 숫자(10진수), symbol, 현재 주소(*)와 + - * / 연산, 괄호, 단항 +, -를 지원한다.
+ * <p>
+ * 식은 명령(opList)과 인자(argList) 두 배열로 저장되며, 계산할 때는 문자열을 다시 읽지 않고 배열만 순서대로 실행한다.
+ * symbol은 나온 순서대로 nameList에 한 번씩만 저장하고, 명령의 인자는 그 번호이다.
+ * <p>
+ * symbol과 *이 식의 결과에 더해지는지 빼지는지(sign)를 해석할 때 함께 기록한다. * 또는 / 안에 있는 항은 0이다.
+ * 이를 이용해 결과가 상대 주소인지(relocation) 알 수 있고, 외부 symbol마다 M 레코드의 부호를 정할 수 있다.
+ */
+public class Expression {
+    /* 명령 */
+    private static final byte NUMBER = 0;      //인자 : 값
+    private static final byte SYMBOL = 1;      //인자 : nameList의 번호
+    private static final byte LOCATION = 2;    //현재 주소 (*)
+    private static final byte ADD = 3;
+    private static final byte SUBTRACT = 4;
+    private static final byte MULTIPLY = 5;
+    private static final byte DIVIDE = 6;
+    private static final byte NEGATE = 7;
+
+    /**
+     * 식에 나온 symbol. 같은 이름은 한 번만 저장한다
+     */
+    final String[] nameList;
+    private final byte[] opList;
+    private final int[] argList;
+    /**
+     * nameList와 같은 index에, 그 symbol이 결과에 더해지는 횟수(빼지면 음수)를 저장한다
+     */
+    private final int[] signList;
+    /**
+     * *이 결과에 더해지는 횟수
+     */
+    private final int locationSign;
+    /**
+     * 계산에 사용하는 stack. 식은 section 하나에서만 사용하므로 계산할 때마다 새로 만들지 않는다
+     */
+    private final int[] stack;
+
+    private Expression(Parser parser) {
+        nameList = parser.nameList.toArray(new String[0]);
+        opList = Arrays.copyOf(parser.opList, parser.size);
+        argList = Arrays.copyOf(parser.argList, parser.size);
+        signList = new int[nameList.length];
+        int locationSign = 0;
+        int depth = 0, maxDepth = 0;
+        for (int i = 0; i < opList.length; i++) {
+            switch (opList[i]) {
+                case SYMBOL:
+                    signList[argList[i]] += parser.signList[i];
+                    depth++;
+                    break;
+                case NUMBER:
+                    depth++;
+                    break;
+                case LOCATION:
+                    locationSign += parser.signList[i];
+                    depth++;
+                    break;
+                case NEGATE:
+                    break;
+                default:
+                    depth--;
+                    break;
+            }
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        this.locationSign = locationSign;
+        this.stack = new int[maxDepth];
+    }
+
+    /**
+     * 식을 해석한다.
+     *
+     * @param text : 식 (예 : BUFEND-BUFFER, (A+B)/2, *-4)
+     * @return : 해석된 식
+     * @throws IllegalArgumentException : 문법에 맞지 않는 경우
+     */
+    public static Expression compile(String text) {
+        Parser parser = new Parser(text);
+        parser.parseSum(1);
+        if (parser.pos != text.length())
+            throw parser.error();
+        return new Expression(parser);
+    }
+
+    /**
+     * 10진수 상수 하나로 된 식이면 true
+     */
+    public boolean isConstant() {
+        return opList.length == 1 && opList[0] == NUMBER;
+    }
+
+    /**
+     * 식을 계산한다. symtab에 없는 symbol(외부 참조)은 0으로 계산한다.
+     *
+     * @param symtab   : symbol의 값을 찾을 table
+     * @param location : *의 값 (현재 주소)
+     * @return : 식의 값
+     */
+    public int evaluate(SymbolTable symtab, int location) {
+        int top = 0;
+        for (int i = 0; i < opList.length; i++) {
+            switch (opList[i]) {
+                case NUMBER:
+                    stack[top++] = argList[i];
+                    break;
+                case SYMBOL:
+                    int index = symtab.indexOf(nameList[argList[i]]);
+                    stack[top++] = index == -1 ? 0 : symtab.getLocation(index);
+                    break;
+                case LOCATION:
+                    stack[top++] = location;
+                    break;
+                case ADD:
+                    top--;
+                    stack[top - 1] += stack[top];
+                    break;
+                case SUBTRACT:
+                    top--;
+                    stack[top - 1] -= stack[top];
+                    break;
+                case MULTIPLY:
+                    top--;
+                    stack[top - 1] *= stack[top];
+                    break;
+                case DIVIDE:
+                    top--;
+                    if (stack[top] == 0)
+                        throw new ArithmeticException("division by zero : " + this);
+                    stack[top - 1] /= stack[top];
+                    break;
+                case NEGATE:
+                    stack[top - 1] = -stack[top - 1];
+                    break;
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * 결과에 더해지는 상대 주소의 수. section 안의 상대 symbol(SymbolTable.isAbsolute()가 false)과 *을 센다.
+     * 외부 symbol은 M 레코드로 따로 처리하므로 세지 않는다.
+     *
+     * @return : 0이면 절대값, 1이면 section의 시작 주소를 기준으로 하는 상대 주소. 그 외의 값은 잘못된 식이다
+     */
+    public int relocation(SymbolTable symtab) {
+        int relocation = locationSign;
+        for (int i = 0; i < nameList.length; i++) {
+            int index = symtab.indexOf(nameList[i]);
+            if (index != -1 && !symtab.isAbsolute(index))
+                relocation += signList[i];
+        }
+        return relocation;
+    }
+
+    /**
+     * i번째 symbol이 결과에 더해지는 횟수. 빼지면 음수이고, * 또는 / 안에 있으면 0이다.
+     */
+    public int signOf(int i) {
+        return signList[i];
+    }
+
+    /**
+     * 식을 postfix 형태의 문자열로 만든다. (디버깅용)
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < opList.length; i++) {
+            if (i > 0)
+                builder.append(' ');
+            switch (opList[i]) {
+                case NUMBER:
+                    builder.append(argList[i]);
+                    break;
+                case SYMBOL:
+                    builder.append(nameList[argList[i]]);
+                    break;
+                default:
+                    builder.append(" *+-*/~".charAt(opList[i] - LOCATION + 1));
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 재귀 하강 방식으로 식을 읽으며 postfix 명령을 만든다.
+     * sum := product (('+' | '-') product)*
+     * product := factor (('*' | '/') factor)*
+     * factor := ('+' | '-') factor | '(' sum ')' | 숫자 | symbol | '*'
+     */
+    private static class Parser {
+        final String text;
+        int pos;
+        byte[] opList = new byte[8];
+        int[] argList = new int[8];
+        int[] signList = new int[8];    //명령과 같은 index에, 그 항이 결과에 더해지는지(1) 빼지는지(-1)
+        int size;
+        final ArrayList<String> nameList = new ArrayList<>();
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        void parseSum(int sign) {
+            parseProduct(sign);
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '+') {
+                    pos++;
+                    parseProduct(sign);
+                    emit(ADD, 0, 0);
+                } else if (c == '-') {
+                    pos++;
+                    parseProduct(-sign);
+                    emit(SUBTRACT, 0, 0);
+                } else
+                    return;
+            }
+        }
+
+        void parseProduct(int sign) {
+            int begin = size;
+            parseFactor(sign);
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c != '*' && c != '/')
+                    return;
+                pos++;
+                parseFactor(0);
+                emit(c == '*' ? MULTIPLY : DIVIDE, 0, 0);
+                //곱하거나 나눈 항은 더하거나 뺄 수 있는 주소가 아니다
+                Arrays.fill(signList, begin, size, 0);
+            }
+        }
+
+        void parseFactor(int sign) {
+            if (pos >= text.length())
+                throw error();
+            char c = text.charAt(pos);
+            if (c == '+') {
+                pos++;
+                parseFactor(sign);
+            } else if (c == '-') {
+                pos++;
+                parseFactor(-sign);
+                emit(NEGATE, 0, 0);
+            } else if (c == '(') {
+                pos++;
+                parseSum(sign);
+                if (pos >= text.length() || text.charAt(pos) != ')')
+                    throw error();
+                pos++;
+            } else if (c == '*') {
+                pos++;
+                emit(LOCATION, 0, sign);
+            } else if (c >= '0' && c <= '9') {
+                int end = pos;
+                while (end < text.length() && Character.isDigit(text.charAt(end)))
+                    end++;
+                emit(NUMBER, Integer.parseInt(text, pos, end, 10), 0);
+                pos = end;
+            } else {
+                int end = pos;
+                while (end < text.length() && "+-*/()".indexOf(text.charAt(end)) == -1)
+                    end++;
+                if (end == pos)
+                    throw error();
+                String name = text.substring(pos, end);
+                int id = nameList.indexOf(name);
+                if (id == -1) {
+                    id = nameList.size();
+                    nameList.add(name);
+                }
+                emit(SYMBOL, id, sign);
+                pos = end;
+            }
+        }
+
+        void emit(byte op, int arg, int sign) {
+            if (size == opList.length) {
+                opList = Arrays.copyOf(opList, size * 2);
+                argList = Arrays.copyOf(argList, size * 2);
+                signList = Arrays.copyOf(signList, size * 2);
+            }
+            opList[size] = op;
+            argList[size] = arg;
+            signList[size] = sign;
+            size++;
+        }
+
+        IllegalArgumentException error() {
+            return new IllegalArgumentException("invalid expression : " + text);
+        }
+    }
+}
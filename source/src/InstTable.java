@@ -1,10 +1,18 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 
 /**
  * 모든 instruction의 정보를 관리하는 클래스. instruction data들을 저장한다
  * 또한 instruction 관련 연산, 예를 들면 목록을 구축하는 함수, 관련 정보를 제공하는 함수 등을 제공 한다.
+ * 생성이 끝난 뒤에는 내용을 바꾸지 않으므로 (openFile을 다시 호출하지 않는 한) 여러 thread에서 공유해도 된다.
  */
 public class InstTable {
     /**
@@ -13,6 +21,31 @@ public class InstTable {
      */
     HashMap<String, Instruction> instMap;
 
+    /*
+     * openFile에서 instMap을 바탕으로 만드는 perfect hash (hash and displace).
+     * 명령어 이름의 hash로 bucket을 나눈 뒤, bucket마다 충돌이 없는 seed를 찾아 displaceList에 저장한다.
+     * 결과적으로 모든 명령어가 slotList의 서로 다른 칸에 하나씩 들어간다.
+     * 검색 시 나눗셈을 피하기 위해 두 배열의 크기는 2의 거듭제곱으로 맞춘다.
+     */
+    private int[] displaceList;
+    private Instruction[] slotList;
+    private int maxLength;              //가장 긴 명령어 이름의 길이
+    private int[] plusWeight;           //'+' * 31^k. "+이름"의 hashCode에서 '+'의 몫을 빼는 데 사용
+
+    /*
+     * inst.data를 컴파일한 binary image (파일 이름 + ".bin").
+     * 처음 실행할 때 text를 파싱하고 perfect hash를 만든 결과를 저장해 두고, 이후에는 memory-map하여 그대로 읽는다.
+     * inst.data 내용의 SHA-256이 저장할 때와 다르면 다시 만든다. (크기와 수정 시각만으로는 내용이 바뀐 것을 놓칠 수 있다)
+     *
+     * 형식 (big endian) :
+     * magic(int), inst.data의 SHA-256(32 byte), 명령어 수(int),
+     * [format(byte), opcode(byte), operand 수(byte), 이름 길이(byte), 이름(ISO-8859-1)]...,
+     * displaceList 크기(int), displaceList(int[]), slotList 크기(int), slotList에 들어간 명령어 번호(int[], 빈 칸은 -1)
+     */
+    private static final int IMAGE_MAGIC = 0x53494332;  //"SIC2"
+    private static final int HASH_LENGTH = 32;
+    private static final String IMAGE_SUFFIX = ".bin";
+
     /**
      * 클래스 초기화. 파싱을 동시에 처리한다.
      *
@@ -27,19 +60,240 @@ public class InstTable {
      * 입력받은 이름의 파일을 열고 해당 내용을 파싱하여 instMap에 저장한다.
      */
     public void openFile(String fileName) {
-        try {
-            File file = new File(fileName);
-            FileReader fileReader = new FileReader(file);
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line;
+        File file = new File(fileName);
+        File image = new File(fileName + IMAGE_SUFFIX);
+        //처음 읽는 명세이고 최신 image가 있으면 파싱하지 않는다
+        boolean first = instMap.isEmpty();
+        byte[] hash = first ? hashOf(file) : null;
+        if (hash != null && loadImage(hash, image))
+            return;
+        try (SourceReader source = new SourceReader(fileName)) {
             //한 줄씩 instruction 정보 가져와서 저장
-            while ((line = bufferedReader.readLine()) != null) {
-                Instruction inst = new Instruction(line);
-                instMap.put(inst.instruction, inst);
+            while (source.nextLine()) {
+                Instruction inst = new Instruction(source.lineString());
+                //형식이 맞지 않는 줄은 무시
+                if (inst.instruction != null)
+                    instMap.put(inst.instruction, inst);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        buildPerfectHash();
+        if (hash != null)
+            saveImage(hash, image);
+    }
+
+    /**
+     * inst.data 내용의 SHA-256을 구한다.
+     *
+     * @return : 파일을 읽을 수 없으면 null
+     */
+    private static byte[] hashOf(File file) {
+        try {
+            return SectionCache.sha256().digest(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * binary image를 memory-map하여 instMap과 perfect hash를 채운다.
+     *
+     * @param hash  : inst.data 내용의 SHA-256
+     * @param image : binary image 파일
+     * @return : image가 없거나, inst.data가 바뀌었거나, 형식이 맞지 않으면 아무것도 하지 않고 false
+     */
+    private boolean loadImage(byte[] hash, File image) {
+        if (!image.isFile())
+            return false;
+        try (FileChannel channel = FileChannel.open(image.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != IMAGE_MAGIC)
+                return false;
+            byte[] imageHash = new byte[HASH_LENGTH];
+            buffer.get(imageHash);
+            if (!Arrays.equals(imageHash, hash))
+                return false;
+            Instruction[] instList = new Instruction[buffer.getInt()];
+            byte[] name = new byte[255];
+            for (int i = 0; i < instList.length; i++) {
+                int format = buffer.get();
+                int opcode = buffer.get() & 0xFF;
+                int operandNum = buffer.get();
+                int length = buffer.get() & 0xFF;
+                buffer.get(name, 0, length);
+                instList[i] = new Instruction(new String(name, 0, length, StandardCharsets.ISO_8859_1), format, opcode, operandNum);
+            }
+            int[] displace = new int[buffer.getInt()];
+            for (int i = 0; i < displace.length; i++)
+                displace[i] = buffer.getInt();
+            Instruction[] slot = new Instruction[buffer.getInt()];
+            for (int i = 0; i < slot.length; i++) {
+                int index = buffer.getInt();
+                slot[i] = index == -1 ? null : instList[index];
+            }
+
+            for (Instruction inst : instList)
+                instMap.put(inst.instruction, inst);
+            displaceList = displace;
+            slotList = slot;
+            setMaxLength();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            //깨진 image는 무시하고 text를 다시 파싱한다
+            instMap.clear();
+            return false;
+        }
+    }
+
+    /**
+     * 파싱한 명세와 perfect hash를 binary image로 저장한다.
+     * 다른 process와 동시에 써도 깨지지 않도록 임시 파일에 쓴 뒤 이름을 바꾸며, 저장할 수 없는 폴더이면 조용히 넘어간다.
+     *
+     * @param hash  : inst.data 내용의 SHA-256
+     * @param image : binary image 파일
+     */
+    private void saveImage(byte[] hash, File image) {
+        ArrayList<Instruction> instList = new ArrayList<>(instMap.values());
+        HashMap<Instruction, Integer> indexMap = new HashMap<>();
+        int size = 4 + HASH_LENGTH + 4 + 4 + displaceList.length * 4 + 4 + slotList.length * 4;
+        for (int i = 0; i < instList.size(); i++) {
+            indexMap.put(instList.get(i), i);
+            size += 4 + instList.get(i).instruction.length();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(IMAGE_MAGIC).put(hash).putInt(instList.size());
+        for (Instruction inst : instList) {
+            byte[] name = inst.instruction.getBytes(StandardCharsets.ISO_8859_1);
+            buffer.put((byte) inst.format).put((byte) inst.opcode).put((byte) inst.operandNum).put((byte) name.length).put(name);
+        }
+        buffer.putInt(displaceList.length);
+        for (int displace : displaceList)
+            buffer.putInt(displace);
+        buffer.putInt(slotList.length);
+        for (Instruction inst : slotList)
+            buffer.putInt(inst == null ? -1 : indexMap.get(inst));
+        buffer.flip();
+
+        try {
+            Path directory = image.toPath().toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(directory, image.getName(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+            Files.move(temp, image.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            //image가 없어도 text를 파싱하여 동작하므로 무시한다
+        }
+    }
+
+    /**
+     * 명령어 이름으로 Instruction을 검색한다. format 4를 나타내는 '+'가 붙어있어도 새 문자열을 만들지 않고 검색한다.
+     *
+     * @param operator : 토큰의 operator. 예) LDA, +JSUB
+     * @return : 해당하는 Instruction. 명령어가 아니면 null
+     */
+    public Instruction search(String operator) {
+        int begin = (operator.length() > 0 && operator.charAt(0) == '+') ? 1 : 0;
+        int end = operator.length();
+        if (begin == end || end - begin > maxLength)
+            return null;
+        //String의 hashCode는 캐시되므로 '+'가 붙은 경우에도 다시 계산하지 않고 '+'의 몫만 뺀다
+        int h = operator.hashCode();
+        if (begin == 1)
+            h -= plusWeight[end - 1];
+        Instruction inst = slotList[displace(h, displaceList[bucket(h)]) & (slotList.length - 1)];
+        //perfect hash는 등록되지 않은 이름도 어떤 칸으로 보내므로 이름을 확인한다
+        if (inst == null || inst.instruction.length() != end - begin || !inst.instruction.regionMatches(0, operator, begin, end - begin))
+            return null;
+        return inst;
+    }
+
+    /**
+     * instMap의 명령어들로 perfect hash를 구성한다.
+     * bucket을 크기가 큰 순서대로 처리하면서 bucket 안의 명령어들이 모두 빈 칸에 들어가는 seed를 찾는다.
+     */
+    private void buildPerfectHash() {
+        int size = Integer.highestOneBit(Math.max(1, instMap.size() - 1)) << 1;
+        slotList = new Instruction[size];
+        displaceList = new int[Math.max(1, size / 4)];
+        setMaxLength();
+
+        //bucket 분배
+        ArrayList<ArrayList<Instruction>> bucketList = new ArrayList<>();
+        for (int i = 0; i < displaceList.length; i++)
+            bucketList.add(new ArrayList<>());
+        for (Instruction inst : instMap.values())
+            bucketList.get(bucket(hash(inst.instruction))).add(inst);
+        Integer[] order = new Integer[displaceList.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> bucketList.get(b).size() - bucketList.get(a).size());
+
+        //bucket마다 seed 찾기
+        int[] used = new int[size];
+        for (int bucket : order) {
+            ArrayList<Instruction> instList = bucketList.get(bucket);
+            if (instList.isEmpty())
+                break;
+            for (int seed = 1; ; seed++) {
+                //이름의 hash가 겹치는 명령어가 있으면 seed를 찾을 수 없다
+                if (seed == 1 << 20)
+                    throw new IllegalStateException("cannot build perfect hash for instruction table");
+                boolean placed = true;
+                for (Instruction inst : instList) {
+                    int slot = displace(hash(inst.instruction), seed) & (size - 1);
+                    if (slotList[slot] != null || used[slot] == seed) {
+                        placed = false;
+                        break;
+                    }
+                    used[slot] = seed;
+                }
+                if (placed) {
+                    for (Instruction inst : instList)
+                        slotList[displace(hash(inst.instruction), seed) & (size - 1)] = inst;
+                    displaceList[bucket] = seed;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 가장 긴 명령어 이름의 길이와 그에 맞는 plusWeight를 구한다.
+     */
+    private void setMaxLength() {
+        maxLength = 0;
+        for (String name : instMap.keySet())
+            maxLength = Math.max(maxLength, name.length());
+        plusWeight = new int[maxLength + 1];
+        plusWeight[0] = '+';
+        for (int i = 1; i <= maxLength; i++)
+            plusWeight[i] = plusWeight[i - 1] * 31;
+    }
+
+    /**
+     * 이름의 hash 값. search()에서 '+'를 뺀 값과 일치하도록 String.hashCode()를 그대로 사용한다.
+     */
+    private static int hash(String name) {
+        return name.hashCode();
+    }
+
+    /**
+     * 이름의 hash 값이 속하는 bucket 번호
+     */
+    private int bucket(int hash) {
+        return (hash ^ hash >>> 16) & (displaceList.length - 1);
+    }
+
+    /**
+     * 이름의 hash 값을 bucket의 seed로 섞어 slot 번호를 만든다. 항상 0 이상의 값을 리턴한다.
+     */
+    private static int displace(int hash, int seed) {
+        int h = (hash ^ seed * 0x9E3779B9) * 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & 0x7FFFFFFF;
     }
 }
 /**
@@ -66,6 +320,16 @@ class Instruction {
         parsing(line);
     }
 
+    /**
+     * 이미 파싱된 정보로 선언한다. (InstTable의 binary image에서 사용)
+     */
+    Instruction(String instruction, int format, int opcode, int operandNum) {
+        this.instruction = instruction;
+        this.format = format;
+        this.opcode = opcode;
+        this.operandNum = operandNum;
+    }
+
     /**
      * 일반 문자열을 파싱하여 instruction 정보를 파악하고 저장한다.
      *
@@ -0,0 +1,129 @@
+/**
+ * 명령어 토큰 하나를 몇 번의 정수 연산으로 object code로 만드는 encoder.
+ * n, i, x, e 비트는 (명령어 크기, addressing mode) 조합마다 TEMPLATE에 미리 계산해 두고,
+ * b, p 비트와 displacement만 참조 주소에 따라 정한다. 레지스터 번호는 REGISTERS 배열의 순서이다.
+ * 문자열을 다루거나 객체를 만들지 않으므로 pass2에서 명령어마다 할당이 일어나지 않는다.
+ * <p>
+ * 규칙은 다음과 같다.
+ * 1) 3-4byte format은 n = i = 1이고, operand가 있는 명령어에서 #이면 n = 0, @이면 i = 0이다.
+ * 2) immediate이면 b = p = 0이고 displacement는 operand의 값이다.
+ * 3) 참조 주소가 있으면 pc relative(p = 1)로, 범위(±0x7FF)를 넘으면 b = 1, displacement = 0으로 만든다.
+ * 참조 주소가 없으면 (외부 참조) b = p = 0, displacement = 0이다.
+ * 4) 2byte format에는 nixbpe가 없다.
+ */
+final class InstructionEncoder {
+    /**
+     * 레지스터 이름. index가 레지스터 번호이다. 7번은 레지스터가 없다
+     */
+    static final String[] REGISTERS = {"A", "X", "L", "B", "S", "T", "F", null, "PC", "SW"};
+
+    /* TEMPLATE[byteSize][mode] : n, i, x, e 비트. mode는 MODE_IMMEDIATE, MODE_INDIRECT, MODE_INDEX의 조합 */
+    private static final int MODE_MASK = TokenTable.MODE_IMMEDIATE | TokenTable.MODE_INDIRECT | TokenTable.MODE_INDEX;
+    private static final byte[][] TEMPLATE = new byte[5][MODE_MASK + 1];
+
+    static {
+        for (int byteSize = 3; byteSize <= 4; byteSize++) {
+            for (int mode = 0; mode <= MODE_MASK; mode++) {
+                int nixbpe = TokenTable.nFlag | TokenTable.iFlag;
+                if ((mode & TokenTable.MODE_IMMEDIATE) != 0)
+                    nixbpe = TokenTable.iFlag;
+                else if ((mode & TokenTable.MODE_INDIRECT) != 0)
+                    nixbpe = TokenTable.nFlag;
+                if ((mode & TokenTable.MODE_INDEX) != 0)
+                    nixbpe |= TokenTable.xFlag;
+                if (byteSize == 4)
+                    nixbpe |= TokenTable.eFlag;
+                TEMPLATE[byteSize][mode] = (byte) nixbpe;
+            }
+        }
+    }
+
+    private InstructionEncoder() {
+    }
+
+    /**
+     * 레지스터 이름의 번호를 찾는다. TokenTable이 name을 저장할 때 한 번만 호출한다.
+     *
+     * @return : 레지스터 번호. 레지스터가 아니면 -1
+     */
+    static int register(String name) {
+        for (int i = 0; i < REGISTERS.length; i++) {
+            if (name.equals(REGISTERS[i]))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 2byte format의 operand 자리(r1, r2)를 만든다.
+     *
+     * @param first  : 첫번째 레지스터 번호
+     * @param second : 두번째 레지스터 번호
+     * @param count  : operand 개수
+     * @throws IllegalArgumentException : 사용하는 operand가 레지스터가 아닌 경우 (예: CLEAR X, 의 빈 operand)
+     */
+    static int registerPair(int first, int second, int count) {
+        if (count > 0 && first < 0 || count > 1 && second < 0)
+            throw new IllegalArgumentException("invalid register operand");
+        switch (count) {
+            case 2:
+                return second | first << 4;
+            case 1:
+                return first << 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 명령어의 object code를 만든다.
+     *
+     * @param inst     : 명령어
+     * @param byteSize : 명령어 크기 (format 4이면 4)
+     * @param mode     : TokenTable.addressingMode()
+     * @param location : 명령어의 주소
+     * @param value    : 2byte format이면 registerPair(), immediate이면 operand의 값, 그 외에는 참조 주소 (없으면 -1)
+     * @return : byteSize byte의 object code
+     */
+    static int encode(Instruction inst, int byteSize, int mode, int location, int value) {
+        switch (byteSize) {
+            case 1:
+                return inst.opcode;
+            case 2:
+                return inst.opcode << 8 | value;
+        }
+        //operand가 없는 명령어는 #, @를 무시한다
+        if (inst.operandNum == 0)
+            mode &= TokenTable.MODE_INDEX;
+        int nixbpe = TEMPLATE[byteSize][mode & MODE_MASK];
+        int displacement = 0;
+        if ((mode & TokenTable.MODE_IMMEDIATE) != 0)
+            displacement = value;
+        else if (value != -1) {
+            displacement = value - (location + byteSize);
+            if (Math.abs(displacement) <= 0x7FF)
+                nixbpe |= TokenTable.pFlag;
+            else {
+                nixbpe |= TokenTable.bFlag;
+                displacement = 0;
+            }
+        }
+        if (byteSize == 3)
+            return (inst.opcode << 4 | nixbpe) << 12 | (displacement & 0xFFF);
+        return (inst.opcode << 4 | nixbpe) << 20 | (displacement & 0xFFFFF);
+    }
+
+    /**
+     * encode()가 만든 object code에서 nixbpe를 꺼낸다.
+     */
+    static char nixbpeOf(int code, int byteSize) {
+        switch (byteSize) {
+            case 3:
+                return (char) (code >>> 12 & 0x3F);
+            case 4:
+                return (char) (code >>> 20 & 0x3F);
+            default:
+                return 0;
+        }
+    }
+}
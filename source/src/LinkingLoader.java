@@ -0,0 +1,338 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 어셈블러가 출력한 object program(H, D, R, T, M, E 레코드)들을 읽어 하나의 메모리 이미지로 연결하는 linking loader.
+ * 여러 파일을 읽을 수 있으며, 모든 control section은 읽은 순서대로 progAddr부터 이어서 배치된다.
+ * <p>
+ * 1) load : 레코드를 읽으면서 section 이름과 D 레코드의 symbol을 ESTAB에 절대 주소로 저장하고,
+ * T 레코드는 바로 메모리 이미지에 복사한다. M 레코드는 다른 파일에서 정의되는 symbol을 참조할 수 있으므로 모아둔다.
+ * 2) link : 모아둔 M 레코드의 symbol을 이름마다 한 번씩만 ESTAB에서 찾은 뒤, 주소순으로 정렬하여 한 번에 적용한다.
+ * <p>
+ * ESTAB은 SymbolTable(해시 검색)을 그대로 사용하므로 section과 symbol 수에 비례하는 시간에 연결된다.
+ * 결과는 MemoryImageWriter 형식으로, 연결된 프로그램 하나(modification 없음)를 출력한다.
+ * <p>
+ * 사용 예 : java LinkingLoader [-address 주소(16진수)] output.bin input1.txt input2.txt ...
+ */
+public class LinkingLoader {
+    /**
+     * 외부 symbol table. section 이름과 D 레코드의 symbol -> 절대 주소
+     */
+    final SymbolTable estab;
+    /**
+     * 프로그램을 올리기 시작하는 주소
+     */
+    final int progAddr;
+    /**
+     * 연결된 메모리 이미지. memory[i]가 progAddr + i 주소의 내용이다
+     */
+    byte[] memory;
+    /**
+     * 지금까지 배치한 section들의 길이 합
+     */
+    int length;
+    /**
+     * 실행 시작 주소. E 레코드에 주소가 있는 첫 section의 것을 사용하며, 없으면 -1
+     */
+    int entry;
+    /**
+     * 처음 읽은 section의 이름. 출력하는 프로그램의 이름으로 사용한다
+     */
+    String programName;
+    /**
+     * 읽은 section 수
+     */
+    int sectionCount;
+
+    /*
+     * 아직 적용하지 않은 M 레코드들. i번째 M 레코드의 정보는 각 배열의 i번째 칸에 있다.
+     * modificationKey는 (절대 주소 << 32 | i)로 묶어두어 long 배열 하나의 정렬로 주소순 적용 순서를 얻는다.
+     * symbol은 referenceList의 번호로 저장하여 같은 이름은 한 번만 검색한다.
+     */
+    private long[] modificationKey = new long[64];
+    private byte[] halfByteList = new byte[64];
+    private byte[] signList = new byte[64];
+    private int[] referenceIdList = new int[64];
+    private int modificationCount;
+    private final ArrayList<String> referenceList = new ArrayList<>();
+    private final HashMap<String, Integer> referenceMap = new HashMap<>();
+
+    /* 읽는 중인 section의 정보 */
+    private int csAddr;         //section이 배치된 절대 주소
+    private int csStart;        //H 레코드의 시작 주소. 레코드의 주소는 이 값을 기준으로 한다
+    private int csLength;       //H 레코드의 길이
+    private String csName;
+
+    /**
+     * 클래스 초기화.
+     *
+     * @param progAddr : 프로그램을 올리기 시작하는 주소
+     */
+    public LinkingLoader(int progAddr) {
+        this.progAddr = progAddr;
+        estab = new SymbolTable();
+        memory = new byte[4096];
+        entry = -1;
+    }
+
+    public static void main(String[] args) {
+        int progAddr = 0;
+        int i = 0;
+        if (args.length > 1 && args[0].equals("-address")) {
+            progAddr = Integer.parseInt(args[1], 16);
+            i = 2;
+        }
+        if (args.length - i < 2) {
+            System.err.println("usage: java LinkingLoader [-address hex] output input...");
+            return;
+        }
+        String outputFile = args[i++];
+
+        LinkingLoader loader = new LinkingLoader(progAddr);
+        try {
+            for (; i < args.length; i++)
+                loader.load(args[i]);
+            loader.link();
+            loader.write(outputFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * object program 파일 하나를 읽어 지금까지 읽은 section들 뒤에 배치한다.
+     *
+     * @param fileName : object program 파일 이름
+     */
+    void load(String fileName) throws IOException {
+        load(Files.readAllBytes(Paths.get(fileName)));
+    }
+
+    /**
+     * object program 하나를 읽어 지금까지 읽은 section들 뒤에 배치한다.
+     * 레코드는 byte 단위로 바로 해석하며, 줄마다 String을 만들지 않는다.
+     *
+     * @param data : object program 파일의 내용 (ASCII)
+     * @throws IllegalArgumentException : 형식이 맞지 않는 레코드가 있는 경우
+     */
+    void load(byte[] data) {
+        int begin = 0;
+        while (begin < data.length) {
+            int end = begin;
+            while (end < data.length && data[end] != '\n')
+                end++;
+            int next = end + 1;
+            if (end > begin && data[end - 1] == '\r')
+                end--;
+            if (end > begin)
+                loadRecord(data, begin, end);
+            begin = next;
+        }
+    }
+
+    /**
+     * 레코드 한 줄(data[begin, end))을 처리한다.
+     * 모든 필드는 레코드 안에서만 읽으며, 필드가 모자라거나 16진수가 아닌 자리가 있으면 그 레코드를 거부한다.
+     *
+     * @throws IllegalArgumentException : 형식이 맞지 않는 레코드인 경우
+     */
+    private void loadRecord(byte[] data, int begin, int end) {
+        switch (data[begin]) {
+            case 'H':
+                //H 이름(6) 시작 주소(6) 길이(6)
+                csName = name(data, begin + 1, end);
+                csStart = hex(data, begin + 7, 6, end);
+                csLength = hex(data, begin + 13, 6, end);
+                csAddr = progAddr + length;
+                if (programName == null)
+                    programName = csName;
+                define(csName, csAddr);
+                ensure(length + csLength);
+                sectionCount++;
+                break;
+            case 'D':
+                //D [이름(6) 주소(6)]...
+                if ((end - begin - 1) % 12 != 0)
+                    throw malformed(data, begin, end);
+                for (int i = begin + 1; i < end; i += 12)
+                    define(name(data, i, end), csAddr + hex(data, i + 6, 6, end) - csStart);
+                break;
+            case 'T': {
+                //T 시작 주소(6) 길이(2) object code
+                int offset = csAddr + hex(data, begin + 1, 6, end) - csStart - progAddr;
+                int size = hex(data, begin + 7, 2, end);
+                if (end - begin - 9 != size * 2)
+                    throw malformed(data, begin, end);
+                ensure(offset + size);
+                for (int i = 0, j = begin + 9; i < size; i++, j += 2)
+                    memory[offset + i] = (byte) hex(data, j, 2, end);
+                break;
+            }
+            case 'M': {
+                //M 주소(6) 길이(2) 부호 symbol. 부호와 symbol이 없으면 section 자신의 재배치이다
+                int address = csAddr + hex(data, begin + 1, 6, end) - csStart;
+                int halfBytes = hex(data, begin + 7, 2, end);
+                if (end - begin == 9)
+                    addModification(address, halfBytes, (byte) '+', csName);
+                else if (end - begin > 10 && (data[begin + 9] == '+' || data[begin + 9] == '-'))
+                    addModification(address, halfBytes, data[begin + 9],
+                            new String(data, begin + 10, end - begin - 10, StandardCharsets.US_ASCII).trim());
+                else
+                    throw malformed(data, begin, end);
+                break;
+            }
+            case 'E':
+                //E [시작 주소(6)]
+                if (end - begin != 1 && end - begin != 7)
+                    throw malformed(data, begin, end);
+                if (entry == -1 && end - begin == 7)
+                    entry = csAddr + hex(data, begin + 1, 6, end) - csStart;
+                length += csLength;
+                break;
+        }
+    }
+
+    /**
+     * 모아둔 M 레코드를 모두 적용한다. 한 번만 호출한다.
+     * symbol은 이름마다 한 번 ESTAB에서 찾고, M 레코드는 주소순으로 정렬하여 메모리를 앞에서부터 한 번 훑으며 고친다.
+     *
+     * @throws IllegalStateException : ESTAB에 없는 symbol을 참조하는 경우
+     */
+    void link() {
+        int[] addressList = new int[referenceList.size()];
+        for (int i = 0; i < addressList.length; i++) {
+            addressList[i] = estab.search(referenceList.get(i));
+            if (addressList[i] == -1)
+                throw new IllegalStateException("undefined external symbol : " + referenceList.get(i));
+        }
+
+        long[] order = Arrays.copyOf(modificationKey, modificationCount);
+        Arrays.sort(order);
+        for (long key : order) {
+            int i = (int) key;
+            int value = addressList[referenceIdList[i]];
+            modify((int) (key >>> 32) - progAddr, halfByteList[i], signList[i] == '-' ? -value : value);
+        }
+        modificationCount = 0;
+    }
+
+    /**
+     * 연결된 메모리 이미지를 MemoryImageWriter 형식으로 출력한다.
+     *
+     * @param fileName : 저장되는 파일 이름
+     */
+    void write(String fileName) throws IOException {
+        try (MemoryImageWriter writer = new MemoryImageWriter(fileName)) {
+            writer.writeImage(programName == null ? "" : programName, entry, memory, length);
+        }
+    }
+
+    /**
+     * ESTAB에 symbol을 추가한다.
+     *
+     * @throws IllegalStateException : 이미 정의된 symbol인 경우
+     */
+    private void define(String symbol, int address) {
+        if (estab.indexOf(symbol) != -1)
+            throw new IllegalStateException("duplicate external symbol : " + symbol);
+        estab.putSymbol(symbol, address);
+    }
+
+    /**
+     * M 레코드 하나를 모아둔다.
+     *
+     * @param address   : 고칠 절대 주소
+     * @param halfBytes : 고칠 길이 (16진수 자리수)
+     * @param sign      : '+' 또는 '-'
+     * @param symbol    : 더하거나 뺄 symbol
+     */
+    private void addModification(int address, int halfBytes, byte sign, String symbol) {
+        if (modificationCount == modificationKey.length) {
+            int size = modificationCount * 2;
+            modificationKey = Arrays.copyOf(modificationKey, size);
+            halfByteList = Arrays.copyOf(halfByteList, size);
+            signList = Arrays.copyOf(signList, size);
+            referenceIdList = Arrays.copyOf(referenceIdList, size);
+        }
+        Integer id = referenceMap.get(symbol);
+        if (id == null) {
+            id = referenceList.size();
+            referenceList.add(symbol);
+            referenceMap.put(symbol, id);
+        }
+        int i = modificationCount++;
+        modificationKey[i] = (long) address << 32 | i;
+        halfByteList[i] = (byte) halfBytes;
+        signList[i] = sign;
+        referenceIdList[i] = id;
+    }
+
+    /**
+     * memory[offset]부터 시작하는 필드의 하위 halfBytes자리에 value를 더한다. 자리수를 넘는 값은 잘린다.
+     * 홀수 자리이면 format 4의 주소처럼 첫 byte의 상위 4bit는 건드리지 않는다.
+     */
+    private void modify(int offset, int halfBytes, int value) {
+        int size = (halfBytes + 1) / 2;
+        long field = 0;
+        for (int i = 0; i < size; i++)
+            field = field << 8 | (memory[offset + i] & 0xFF);
+        long mask = (1L << (halfBytes * 4)) - 1;
+        field = (field & ~mask) | ((field + value) & mask);
+        for (int i = size - 1; i >= 0; i--, field >>>= 8)
+            memory[offset + i] = (byte) field;
+    }
+
+    /**
+     * memory에 size byte가 들어갈 수 있도록 공간을 확보한다.
+     */
+    private void ensure(int size) {
+        if (size > memory.length)
+            memory = Arrays.copyOf(memory, Math.max(memory.length * 2, size));
+    }
+
+    /**
+     * data[from]부터 6 byte의 이름. 뒤의 공백은 뺀다.
+     *
+     * @param end : 레코드의 끝. 이름이 여기를 넘으면 오류이다
+     * @throws IllegalArgumentException : 레코드가 짧은 경우
+     */
+    private static String name(byte[] data, int from, int end) {
+        if (from + 6 > end)
+            throw new IllegalArgumentException("record too short : " + new String(data, from, end - from, StandardCharsets.US_ASCII));
+        int last = from + 6;
+        while (last > from && data[last - 1] == ' ')
+            last--;
+        return new String(data, from, last - from, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * data[from]부터 digits자리의 16진수를 읽는다.
+     *
+     * @param end : 레코드의 끝. 숫자가 여기를 넘으면 오류이다
+     * @throws IllegalArgumentException : 레코드가 짧거나 16진수가 아닌 자리가 있는 경우
+     */
+    private static int hex(byte[] data, int from, int digits, int end) {
+        if (from + digits > end)
+            throw new IllegalArgumentException("record too short : " + new String(data, from, Math.max(end - from, 0), StandardCharsets.US_ASCII));
+        int value = 0;
+        for (int i = from; i < from + digits; i++) {
+            int digit = Character.digit(data[i], 16);
+            if (digit == -1)
+                throw new IllegalArgumentException("invalid hex digit : " + new String(data, from, digits, StandardCharsets.US_ASCII));
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    /**
+     * 형식이 맞지 않는 레코드 data[begin, end)에 대한 예외
+     */
+    private static IllegalArgumentException malformed(byte[] data, int begin, int end) {
+        return new IllegalArgumentException("malformed record : " + new String(data, begin, end - begin, StandardCharsets.US_ASCII));
+    }
+}
@@ -1,19 +1,31 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * literal과 관련된 데이터와 연산을 소유한다.
  * section 별로 하나씩 인스턴스를 할당한다.
+ * <p>
+ * literal은 타입(X 또는 C)과 따옴표 안의 내용을 key로 하는 open addressing 해시 테이블로 검색한다.
+ * 주소와 타입은 literal마다 하나의 int slot에 묶어서 저장한다. (상위 8bit : 타입, 하위 24bit : 주소)
  */
 public class LiteralTable {
-    ArrayList<String> literalList;
-    ArrayList<Integer> locationList;
+    public static final int TYPE_X = 1;
+    public static final int TYPE_C = 2;
 
-    ArrayList<Character> typeList;      //리터럴의 타입(X 또는 C)을 저장
+    /* slot에서 주소가 아직 할당되지 않았음을 나타내는 값 */
+    private static final int UNASSIGNED = 0xFFFFFF;
+
+    ArrayList<String> literalList;      //따옴표 안의 내용만 입력된 순서대로 저장 (출력 순서 유지)
+    int[] slotList;                     //literalList와 같은 index에 (타입 << 24 | 주소)를 저장
+
+    private int[] hashTable;            //literalList의 index + 1을 저장. 0이면 빈 칸
+    private int poolStart;              //아직 주소가 할당되지 않은 literal 중 첫번째 index
 
     public LiteralTable() {
         literalList = new ArrayList<>();
-        locationList = new ArrayList<>();
-        typeList = new ArrayList<>();
+        slotList = new int[16];
+        hashTable = new int[32];
+        poolStart = 0;
     }
 
     /**
@@ -23,10 +35,40 @@ public class LiteralTable {
      * @param location : 해당 literal이 가지는 주소값
      *                 주의 : 만약 중복된 literal이 putLiteral을 통해서 입력된다면 이는 프로그램 코드에 문제가 있음을 나타낸다.
      *                 매칭되는 주소값의 변경은 modifyLiteral()을 통해서 이루어져야 한다.
+     *                 타입은 C로 저장된다. 소스의 operand를 그대로 추가할 때는 putOperand()를 사용한다.
      */
     public void putLiteral(String literal, int location) {
-        literalList.add(literal);
-        locationList.add(location);
+        insert(literal, TYPE_C, location);
+    }
+
+    /**
+     * =X'..' 또는 =C'..' 형태의 operand를 주소가 할당되지 않은 상태로 table에 추가한다.
+     * 같은 타입과 내용의 literal이 이미 있다면 (이전 LTORG에서 할당된 것 포함) 추가하지 않는다.
+     *
+     * @param operand : '='로 시작하는 literal operand
+     * @return : 해당 literal의 index
+     */
+    public int putOperand(String operand) {
+        int type = operand.charAt(1) == 'X' ? TYPE_X : TYPE_C;
+        int index = find(operand, 3, operand.length() - 1, type);
+        if (index == -1)
+            index = insert(operand.substring(3, operand.length() - 1), type, UNASSIGNED);
+        return index;
+    }
+
+    /**
+     * 저장해 둔 literal을 타입과 주소 그대로 table에 다시 추가한다. (SectionCache에서 사용)
+     * 중복 확인 없이 입력된 순서대로 추가한다.
+     *
+     * @param literal  : 따옴표 안의 내용
+     * @param type     : TYPE_X 또는 TYPE_C
+     * @param location : 주소. 할당되지 않은 literal이면 -1
+     */
+    public void restoreLiteral(String literal, int type, int location) {
+        int index = insert(literal, type, location);
+        //앞에서부터 주소가 할당된 literal들은 이미 지나간 pool에 속한다
+        if (location != -1 && index == poolStart)
+            poolStart++;
     }
 
     /**
@@ -36,24 +78,197 @@ public class LiteralTable {
      * @param newLocation : 새로 바꾸고자 하는 주소값
      */
     public void modifyLiteral(String literal, int newLocation) {
-        locationList.set(literalList.indexOf(literal), newLocation);
+        int index = find(literal, 0, literal.length(), 0);
+        slotList[index] = (slotList[index] & 0xFF000000) | (newLocation & UNASSIGNED);
     }
 
     /**
      * 인자로 전달된 literal이 어떤 주소를 지칭하는지 알려준다.
      *
      * @param literal : 검색을 원하는 literal의 label
-     * @return literal이 가지고 있는 주소값. 해당 literal이 없을 경우 -1 리턴
+     * @return literal이 가지고 있는 주소값. 해당 literal이 없거나 아직 주소가 할당되지 않았을 경우 -1 리턴
      */
     public int search(String literal) {
-        int address;
-        //리터럴이 있는지 확인
-        int index = literalList.indexOf(literal);
-        //있다면 locationList에서 location 값 가져오기
-        if (index == -1)
-            address = -1;
+        int index = find(literal, 0, literal.length(), 0);
+        return index == -1 ? -1 : getLocation(index);
+    }
+
+    /**
+     * =X'..' 또는 =C'..' 형태의 operand가 어떤 주소를 지칭하는지 알려준다. operand를 가공하지 않고 그대로 검색한다.
+     *
+     * @param operand : 검색을 원하는 operand
+     * @return literal이 가지고 있는 주소값. literal이 아니거나 table에 없을 경우 -1 리턴
+     */
+    public int searchOperand(String operand) {
+        int index = indexOfOperand(operand);
+        return index == -1 ? -1 : getLocation(index);
+    }
+
+    /**
+     * =X'..' 또는 =C'..' 형태의 operand에 해당하는 literal의 index를 리턴한다.
+     * index는 table이 유지되는 동안 바뀌지 않으므로 한 번 찾아두면 이후에는 getLocation()으로 주소를 읽을 수 있다.
+     *
+     * @param operand : 검색을 원하는 operand
+     * @return literal의 index. literal이 아니거나 table에 없을 경우 -1 리턴
+     */
+    public int indexOfOperand(String operand) {
+        if (operand.length() < 4 || operand.charAt(0) != '=')
+            return -1;
+        int type = operand.charAt(1) == 'X' ? TYPE_X : TYPE_C;
+        return find(operand, 3, operand.length() - 1, type);
+    }
+
+    /**
+     * 주소가 할당되지 않은 literal들에게 locctr부터 차례대로 주소를 할당한다. (LTORG 또는 END)
+     *
+     * @param locctr : 현재 주소
+     * @return : 리터럴이 차지한 메모리 크기
+     */
+    public int assignPool(int locctr) {
+        int size = 0;
+        for (int i = poolStart; i < literalList.size(); i++) {
+            slotList[i] = (slotList[i] & 0xFF000000) | ((locctr + size) & UNASSIGNED);
+            size += getByteSize(i);
+        }
+        poolStart = literalList.size();
+        return size;
+    }
+
+    /**
+     * 아직 주소가 할당되지 않은 literal이 있는지 알려준다.
+     *
+     * @return : 다음 LTORG 또는 END에서 할당될 literal이 있으면 true
+     */
+    public boolean hasPending() {
+        return poolStart < literalList.size();
+    }
+
+    /**
+     * location부터 시작하는 literal pool의 첫번째 literal index를 리턴한다.
+     * 주소는 index 순서대로 증가하도록 할당되므로 이진 탐색으로 찾는다.
+     *
+     * @param location : LTORG 또는 END 토큰의 주소
+     * @return : pool의 첫번째 index. 없으면 size()
+     */
+    public int poolIndex(int location) {
+        int low = 0, high = poolStart;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getLocation(mid) < location)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * 저장된 literal의 개수를 리턴한다.
+     *
+     * @return : literal 개수
+     */
+    public int size() {
+        return literalList.size();
+    }
+
+    /**
+     * index번째 literal의 주소값을 리턴한다.
+     *
+     * @param index : 원하는 literal의 index
+     * @return : 주소값. 아직 할당되지 않았으면 -1
+     */
+    public int getLocation(int index) {
+        int location = slotList[index] & UNASSIGNED;
+        return location == UNASSIGNED ? -1 : location;
+    }
+
+    /**
+     * index번째 literal의 타입을 리턴한다.
+     *
+     * @param index : 원하는 literal의 index
+     * @return : TYPE_X 또는 TYPE_C
+     */
+    public int getType(int index) {
+        return slotList[index] >>> 24;
+    }
+
+    /**
+     * index번째 literal이 차지하는 메모리 크기를 리턴한다.
+     *
+     * @param index : 원하는 literal의 index
+     * @return : byte 크기
+     */
+    public int getByteSize(int index) {
+        int length = literalList.get(index).length();
+        return getType(index) == TYPE_X ? length / 2 : length;
+    }
+
+    /**
+     * 새로운 literal을 literalList, slotList, hashTable에 추가한다.
+     */
+    private int insert(String literal, int type, int location) {
+        int index = literalList.size();
+        if (index == slotList.length)
+            slotList = Arrays.copyOf(slotList, index * 2);
+        literalList.add(literal);
+        slotList[index] = (type << 24) | (location & UNASSIGNED);
+        //load factor를 1/2 이하로 유지
+        if ((index + 1) * 2 > hashTable.length)
+            rehash();
         else
-            address = locationList.get(index);
-        return address;
+            place(index);
+        return index;
+    }
+
+    /**
+     * hashTable의 빈 칸에 index를 배치한다. (linear probing)
+     */
+    private void place(int index) {
+        String literal = literalList.get(index);
+        int mask = hashTable.length - 1;
+        int pos = hash(literal, 0, literal.length()) & mask;
+        while (hashTable[pos] != 0)
+            pos = (pos + 1) & mask;
+        hashTable[pos] = index + 1;
+    }
+
+    /**
+     * hashTable을 두 배로 늘리고 모든 literal을 다시 배치한다.
+     */
+    private void rehash() {
+        hashTable = new int[hashTable.length * 2];
+        for (int i = 0; i < literalList.size(); i++)
+            place(i);
+    }
+
+    /**
+     * key[begin, end) 범위의 문자열과 타입이 일치하는 literal의 index를 찾는다.
+     *
+     * @param type : TYPE_X 또는 TYPE_C. 0이면 타입을 구분하지 않는다
+     * @return : literal의 index. 없으면 -1
+     */
+    private int find(String key, int begin, int end, int type) {
+        int length = end - begin;
+        int mask = hashTable.length - 1;
+        int pos = hash(key, begin, end) & mask;
+        int entry;
+        while ((entry = hashTable[pos]) != 0) {
+            String literal = literalList.get(entry - 1);
+            if (literal.length() == length && literal.regionMatches(0, key, begin, length)
+                    && (type == 0 || getType(entry - 1) == type))
+                return entry - 1;
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * key[begin, end) 범위의 문자열에 대한 hash 값. 부분 문자열을 만들지 않고 계산한다.
+     */
+    private static int hash(String key, int begin, int end) {
+        int h = 0;
+        for (int i = begin; i < end; i++)
+            h = 31 * h + key.charAt(i);
+        return h ^ (h >>> 16);
     }
 }
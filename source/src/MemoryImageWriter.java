@@ -0,0 +1,133 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 어셈블된 section들의 메모리 이미지를 binary 형식으로 FileChannel에 출력하는 클래스.
+ * loader나 simulator가 16진수 텍스트(H/T/M/E)를 다시 해석하지 않고 바로 메모리에 올릴 수 있도록 한다.
+ * <p>
+ * 파일은 section들을 차례대로 이어 붙인 것이며, 모든 정수는 big endian이다.
+ * <pre>
+ * section      := nameLength(u8) name entry(i32) length(i32) image[length] count(i32) modification*count
+ * modification := address(i32) halfBytes(u8) sign(u8, '+' 또는 '-') symbolLength(u8) symbol
+ * </pre>
+ * image는 section의 시작 주소를 0으로 하는 메모리 내용이며, RESW/RESB로 예약된 공간은 0으로 채운다.
+ * entry는 E 레코드의 실행 시작 주소이며 없으면 -1이다.
+ * modification은 M 레코드와 같고, 이를 적용하는 것은 loader의 몫이다.
+ */
+public class MemoryImageWriter implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * 클래스 초기화. 파일이 이미 있으면 내용을 지운다.
+     *
+     * @param fileName : 저장되는 파일 이름
+     */
+    public MemoryImageWriter(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(64 * 1024);
+    }
+
+    /**
+     * pass2가 끝난 section 하나를 메모리 이미지로 만들어 출력한다.
+     *
+     * @param section : 출력할 section
+     */
+    public void writeSection(TokenTable section) throws IOException {
+        //pass1에서 첫 토큰의 주소에 section의 길이를 저장해두었다
+        int length = section.getLocation(0);
+        byte[] image = new byte[length];
+        int entry = -1;
+        int count = 0;
+        for (int i = 0; i < section.size(); i++) {
+            char record = section.getRecord(i);
+            if (record == 'T' && section.getCodeOffset(i) >= 0)
+                System.arraycopy(section.codeBuffer, section.getCodeOffset(i), image, section.getLocation(i), section.getByteSize(i));
+            else if (record == 'M')
+                count++;
+            else if (record == 'E' && section.getObjectCode(i).length() > 0)
+                entry = Integer.parseInt(section.getObjectCode(i), 16);
+        }
+
+        putImage(section.getLabel(0), entry, image, length);
+        ensure(4);
+        buffer.putInt(count);
+        for (int i = 0; i < section.size(); i++) {
+            if (section.getRecord(i) != 'M')
+                continue;
+            //M 레코드의 내용 : 주소(6자리) 길이(2자리) 부호 symbol
+            String code = section.getObjectCode(i);
+            ensure(6);
+            buffer.putInt(Integer.parseInt(code, 0, 6, 16));
+            buffer.put((byte) Integer.parseInt(code, 6, 8, 16));
+            buffer.put((byte) code.charAt(8));
+            putName(code.substring(9));
+        }
+    }
+
+    /**
+     * 이미 만들어진 메모리 이미지 하나를 modification 없이 출력한다. (LinkingLoader에서 연결이 끝난 프로그램을 출력할 때 사용)
+     *
+     * @param name   : 프로그램 이름
+     * @param entry  : 실행 시작 주소. 없으면 -1
+     * @param image  : 메모리 내용
+     * @param length : image에서 출력할 byte 수
+     */
+    public void writeImage(String name, int entry, byte[] image, int length) throws IOException {
+        putImage(name, entry, image, length);
+        ensure(4);
+        buffer.putInt(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+        channel.close();
+    }
+
+    /**
+     * section의 이름, 시작 주소, 길이와 메모리 내용을 쓴다. 메모리 내용은 버퍼를 거치지 않고 채널에 바로 쓴다.
+     */
+    private void putImage(String name, int entry, byte[] image, int length) throws IOException {
+        putName(name);
+        ensure(8);
+        buffer.putInt(entry);
+        buffer.putInt(length);
+        drain();
+        ByteBuffer wrapped = ByteBuffer.wrap(image, 0, length);
+        while (wrapped.hasRemaining())
+            channel.write(wrapped);
+    }
+
+    /**
+     * 길이(u8)와 ASCII 문자열을 쓴다.
+     */
+    private void putName(String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        ensure(1 + bytes.length);
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * 버퍼에 size byte를 쓸 공간이 없으면 먼저 내보낸다.
+     */
+    private void ensure(int size) throws IOException {
+        if (buffer.remaining() < size)
+            drain();
+    }
+
+    /**
+     * 버퍼의 내용을 채널에 모두 쓰고 버퍼를 비운다.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * object program(H, D, R, T, M, E 레코드)을 byte 단위로 만들어 출력하는 클래스.
+ * 레코드는 재사용되는 byte 버퍼에 바로 인코딩되며, 16진수 변환은 String.format 대신 HEX 표를 사용한다.
+ * 버퍼가 가득 차거나 flush(), close()가 호출될 때 연결된 OutputStream으로 내보낸다.
+ * FileChannel에 연결하면 이미 쓴 위치의 16진수 값을 나중에 고쳐 쓸 수 있다. (patchHex, one-pass 어셈블에서 사용)
+ */
+public class ObjectProgramWriter implements Closeable {
+    /* 16진수 숫자 하나를 ASCII 문자로 바꾸는 표 */
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+
+    private final OutputStream out;
+    private final FileChannel channel;  //고쳐 쓰기에 사용. OutputStream에 연결했으면 null
+    private byte[] buffer;
+    private int length;
+    private long drained;               //지금까지 내보낸 byte 수
+
+    /**
+     * 클래스 초기화.
+     *
+     * @param out : 완성된 object program을 내보낼 곳
+     */
+    public ObjectProgramWriter(OutputStream out) {
+        this(out, null);
+    }
+
+    /**
+     * 클래스 초기화. 이미 쓴 내용을 patchHex()로 고칠 수 있다.
+     *
+     * @param channel : 완성된 object program을 내보낼 파일. 처음부터 순서대로 쓴다
+     */
+    public ObjectProgramWriter(FileChannel channel) {
+        this(Channels.newOutputStream(channel), channel);
+    }
+
+    private ObjectProgramWriter(OutputStream out, FileChannel channel) {
+        this.out = out;
+        this.channel = channel;
+        this.buffer = new byte[8192];
+        this.length = 0;
+        this.drained = 0;
+    }
+
+    /**
+     * 지금까지 쓴 byte 수. 다음에 쓰는 내용의 파일 위치이다.
+     */
+    public long position() {
+        return drained + length;
+    }
+
+    /**
+     * position 위치부터 value의 하위 digits자리를 16진수로 고쳐 쓴다.
+     * 아직 버퍼에 있는 내용은 버퍼에서 고치고, 이미 내보낸 내용은 FileChannel의 해당 위치에 다시 쓴다.
+     * 버퍼는 레코드 단위로만 내보내므로 한 레코드 안의 값이 둘로 나뉘는 경우는 없다.
+     *
+     * @param position : position()으로 얻은 위치
+     * @param value    : 새 값
+     * @param digits   : 16진수 자리수 (최대 8)
+     */
+    public void patchHex(long position, int value, int digits) throws IOException {
+        byte[] hex = new byte[digits];
+        for (int i = 0, shift = (digits - 1) * 4; i < digits; i++, shift -= 4)
+            hex[i] = HEX[(value >>> shift) & 0xF];
+        if (position >= drained)
+            System.arraycopy(hex, 0, buffer, (int) (position - drained), digits);
+        else if (channel != null)
+            channel.write(ByteBuffer.wrap(hex), position);
+        else
+            throw new IllegalStateException("cannot patch data already written to a stream");
+    }
+
+    /**
+     * 레코드의 첫 글자(H, D, R, T, M, E)를 쓴다.
+     *
+     * @param record : 레코드 종류
+     * @return : 이어서 쓰기 위한 자기 자신
+     */
+    public ObjectProgramWriter record(char record) {
+        ensure(1);
+        buffer[length++] = (byte) record;
+        return this;
+    }
+
+    /**
+     * value의 하위 digits자리를 대문자 16진수로 쓴다. String.format("%0{digits}X")과 같지만, 자리수를 넘는 값은 잘린다.
+     *
+     * @param value  : 출력할 값
+     * @param digits : 16진수 자리수 (최대 8)
+     * @return : 이어서 쓰기 위한 자기 자신
+     */
+    public ObjectProgramWriter hex(int value, int digits) {
+        ensure(digits);
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4)
+            buffer[length++] = HEX[(value >>> shift) & 0xF];
+        return this;
+    }
+
+    /**
+     * code[offset, offset + size)의 byte들을 한 byte에 두 자리씩 16진수로 쓴다.
+     *
+     * @param code   : object code가 저장된 배열
+     * @param offset : 시작 위치
+     * @param size   : byte 수
+     * @return : 이어서 쓰기 위한 자기 자신
+     */
+    public ObjectProgramWriter hex(byte[] code, int offset, int size) {
+        ensure(size * 2);
+        for (int i = offset; i < offset + size; i++) {
+            buffer[length++] = HEX[(code[i] >> 4) & 0xF];
+            buffer[length++] = HEX[code[i] & 0xF];
+        }
+        return this;
+    }
+
+    /**
+     * ASCII 문자열을 그대로 쓴다.
+     *
+     * @param text : 출력할 문자열
+     * @return : 이어서 쓰기 위한 자기 자신
+     */
+    public ObjectProgramWriter text(String text) {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++)
+            buffer[length++] = (byte) text.charAt(i);
+        return this;
+    }
+
+    /**
+     * 문자열을 쓰고 width보다 짧으면 공백으로 채운다. String.format("%-{width}s")과 같다.
+     *
+     * @param text  : 출력할 문자열
+     * @param width : 최소 폭
+     * @return : 이어서 쓰기 위한 자기 자신
+     */
+    public ObjectProgramWriter padded(String text, int width) {
+        text(text);
+        ensure(width - text.length());
+        for (int i = text.length(); i < width; i++)
+            buffer[length++] = ' ';
+        return this;
+    }
+
+    /**
+     * 레코드를 끝낸다. (줄바꿈)
+     */
+    public void endRecord() throws IOException {
+        ensure(1);
+        buffer[length++] = '\n';
+        if (length >= buffer.length / 2)
+            drain();
+    }
+
+    /**
+     * 버퍼에 남은 내용을 모두 내보낸다.
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    /**
+     * value의 하위 digits자리를 대문자 16진수 문자열로 만든다. String.format("%0{digits}X")을 대신한다.
+     *
+     * @param value  : 변환할 값
+     * @param digits : 16진수 자리수 (최대 8)
+     * @return : 16진수 문자열
+     */
+    public static String toHex(int value, int digits) {
+        byte[] hex = new byte[digits];
+        for (int i = 0, shift = (digits - 1) * 4; i < digits; i++, shift -= 4)
+            hex[i] = HEX[(value >>> shift) & 0xF];
+        return new String(hex, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * code[offset, offset + size)의 byte들을 16진수 문자열로 만든다.
+     *
+     * @param code   : object code가 저장된 배열
+     * @param offset : 시작 위치
+     * @param size   : byte 수
+     * @return : 16진수 문자열
+     */
+    public static String toHex(byte[] code, int offset, int size) {
+        byte[] hex = new byte[size * 2];
+        for (int i = 0; i < size; i++) {
+            hex[i * 2] = HEX[(code[offset + i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[code[offset + i] & 0xF];
+        }
+        return new String(hex, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 버퍼에 size byte를 더 쓸 수 있도록 공간을 확보한다. 한 레코드가 버퍼보다 길면 버퍼를 늘린다.
+     */
+    private void ensure(int size) {
+        if (length + size > buffer.length) {
+            byte[] bigger = new byte[Math.max(buffer.length * 2, length + size)];
+            System.arraycopy(buffer, 0, bigger, 0, length);
+            buffer = bigger;
+        }
+    }
+
+    /**
+     * 버퍼의 내용을 OutputStream으로 내보내고 버퍼를 비운다.
+     */
+    private void drain() throws IOException {
+        out.write(buffer, 0, length);
+        drained += length;
+        length = 0;
+    }
+}
@@ -0,0 +1,476 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * input 파일을 한 번만 읽으면서 object program을 바로 출력하는 one-pass 어셈블러.
+ * 토큰을 section 단위로 저장하지 않고, 한 줄씩 주소를 할당한 즉시 object code를 만들어 T 레코드로 내보낸다.
+ * <p>
+ * 아직 정의되지 않은 symbol이나 아직 주소가 할당되지 않은 literal을 참조하면 이름별로 fixup을 남기고,
+ * 외부 참조일 때와 같은 code를 임시로 출력한다. 나중에 label이 정의되거나 (Assembler.addSymbol과 같은 규칙)
+ * LTORG, END에서 literal pool이 할당되면 기다리던 fixup들의 code를 다시 만들어 이미 출력한 위치를 고쳐 쓴다.
+ * H 레코드의 길이와 EXTDEF 주소도 같은 방식으로 고친다.
+ * section이 끝날 때까지 정의되지 않은 이름은 외부 참조이므로 M 레코드로 출력한다.
+ * <p>
+ * 따라서 메모리에는 프로그램 전체가 아니라 symbol table, literal table과 정의를 기다리는 참조만 남는다.
+ * 출력은 Assembler의 pass1, pass2, printObjectCode와 같다.
+ * EQU도 식의 symbol이 모두 정의되어 있으면 그 줄에서 바로 값을 정하고, 아니면 fixup으로 남겨 symbol이 정의될 때 값을 정한다.
+ * 값이 정해지기 전의 EQU label을 참조하는 명령어, WORD, EXTDEF는 아직 정의되지 않은 이름과 같이 기다린다.
+ * section이 끝날 때까지 값을 정하지 못한 EQU(외부 symbol 참조, 순환 참조)는 two-pass와 같이 오류이다.
+ */
+public class OnePassAssembler implements Closeable {
+    /* fixup의 종류 */
+    private static final int INSTRUCTION = 0;
+    private static final int WORD = 1;
+    private static final int EXTDEF = 2;
+    private static final int EQUATE = 3;
+
+    /**
+     * 정의를 기다리는 참조 하나
+     */
+    private static class Fixup {
+        int kind;
+        Token token;
+        Instruction inst;
+        String[] names;     //EXTDEF : symbol
+        Expression expression;  //WORD, EQUATE : 식
+        int waiting;        //아직 정의되지 않은 이름 수
+        int index;          //section 안에서 토큰의 순서 (M 레코드 순서)
+        int runOffset;      //T 레코드로 출력되기 전, 현재 T 레코드 안에서의 byte 위치
+        long position = -1; //출력된 뒤, 파일에서 값의 16진수가 시작하는 위치
+    }
+
+    /**
+     * 주소 할당과 symbol, literal 정리에 사용하는 assembler. 각 section의 table이 symtabList, literaltabList에 쌓인다.
+     */
+    final Assembler assembler;
+    private final ObjectProgramWriter writer;
+    private final Path outputPath;
+    private boolean failed;             //어셈블 중 예외가 발생하면 true. close()에서 출력 파일을 지운다
+
+    /* 현재 section의 상태 */
+    private TokenTable section;         //symbol, literal 검색용. tokenList에는 토큰을 저장하지 않는다
+    private int locctr;
+    private int tokenIndex;
+    private boolean start;              //START로 시작한 section이면 true
+    private String sectionName;
+    private long lengthPosition;        //H 레코드에서 section 길이의 위치
+    private long lineCount;             //어셈블한 문장 수 (주석과 빈 줄 제외, 모든 section)
+    private final HashMap<String, ArrayList<Fixup>> fixupMap = new HashMap<>();
+    private final LinkedHashSet<String> pendingLiteralSet = new LinkedHashSet<>();
+    private final ArrayList<Fixup> wordList = new ArrayList<>();   //section의 WORD들. 끝날 때 M 레코드를 만든다
+    private final LinkedHashMap<String, Fixup> pendingEquateMap = new LinkedHashMap<>();   //값을 정하지 못한 EQU. label -> fixup
+
+    /* 아직 출력하지 않은 T 레코드. 레코드가 출력되면 그 안의 참조들은 파일 위치로 고친다 */
+    private final TextRecordPacker packer;
+    private final ArrayList<Fixup> runFixupList = new ArrayList<>();
+    private byte[] dataBuffer = new byte[64];  //BYTE와 literal pool의 code를 만드는 공간
+
+    /**
+     * 클래스 초기화.
+     *
+     * @param assembler  : instruction table을 가진 assembler
+     * @param outputFile : object program을 저장할 파일 이름
+     */
+    public OnePassAssembler(Assembler assembler, String outputFile) throws IOException {
+        this.assembler = assembler;
+        outputPath = Paths.get(outputFile);
+        writer = new ObjectProgramWriter(FileChannel.open(outputPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        packer = new TextRecordPacker(writer, assembler.maxRecordLength) {
+            @Override
+            protected void flushed(long position) {
+                for (Fixup fixup : runFixupList)
+                    fixup.position = position + fixup.runOffset * 2L;
+                runFixupList.clear();
+            }
+        };
+    }
+
+    /**
+     * input 파일 전체를 어셈블한다. 끝나면 close()로 마지막 section을 마무리해야 한다.
+     * 예외가 발생하면 close()는 section을 마무리하지 않고 쓰다 만 출력 파일을 지운다.
+     *
+     * @param inputFile : input 파일 이름
+     */
+    public void assemble(String inputFile) throws IOException {
+        try (SourceReader source = new SourceReader(inputFile)) {
+            while (source.nextLine())
+                putLine(source.lineString());
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * 한 줄을 어셈블한다. 주소를 할당하고, 이 줄로 정의되는 이름을 기다리던 참조를 고친 뒤 object code를 출력한다.
+     *
+     * @param line : 소스 한 줄
+     */
+    public void putLine(String line) throws IOException {
+        Token token = new Token(line);
+        //주석과 빈 줄 무시
+        if (Assembler.isComment(token))
+            return;
+        if (Assembler.isSectionStart(token))
+            startSection(token);
+        token.discardComment();
+
+        locctr = assembler.locateToken(section, token, locctr);
+        //값을 정하지 못한 EQU의 label은 값이 정해질 때 기다리던 참조를 고친다
+        boolean pending = token.operator.equals("EQU") && defineEquate(token);
+        if (token.label.length() > 0 && !pending)
+            resolve(token.label);
+        if (token.operator.equals("LTORG") || token.operator.equals("END"))
+            resolveLiterals();
+        emit(token);
+        tokenIndex++;
+        lineCount++;
+    }
+
+    /**
+     * 지금까지 어셈블한 문장 수. pass1에서 section별로 저장하는 토큰 수의 합과 같다.
+     */
+    public long lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * 마지막 section을 마무리하고 파일을 닫는다. 어셈블에 실패했으면 마무리하지 않고 출력 파일을 지운다.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (section != null && !failed)
+                finishSection();
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            writer.close();
+            if (failed)
+                Files.deleteIfExists(outputPath);
+        }
+    }
+
+    /**
+     * 이전 section을 마무리하고 새 section의 table을 만든다.
+     */
+    private void startSection(Token token) throws IOException {
+        if (section != null)
+            finishSection();
+        SymbolTable symtab = new SymbolTable();
+        LiteralTable littab = new LiteralTable();
+        assembler.symtabList.add(symtab);
+        assembler.literaltabList.add(littab);
+        section = new TokenTable(symtab, assembler.instTable);
+        section.literalTab = littab;
+        locctr = 0;
+        tokenIndex = 0;
+        start = token.operator.equals("START");
+        sectionName = token.label;
+    }
+
+    /**
+     * 토큰의 object code를 출력한다. 기록 방식은 TokenTable.makeObjectCode와 같다.
+     */
+    private void emit(Token token) throws IOException {
+        Instruction inst = assembler.instTable.search(token.operator);
+        //START나 CSECT : 길이는 section이 끝날 때 고친다
+        if (token.operator.equals("START") || token.operator.equals("CSECT")) {
+            packer.flush();
+            writer.record('H').padded(token.label, 6).hex(0, 6);
+            lengthPosition = writer.position();
+            writer.hex(0, 6).endRecord();
+        }
+        //EXTDEF
+        else if (token.operator.equals("EXTDEF")) {
+            packer.flush();
+            writer.record('D');
+            for (String extdef : token.operand) {
+                writer.padded(extdef, 6);
+                int address = section.symTab.search(extdef);
+                if (address == -1 || pendingEquateMap.containsKey(extdef)) {
+                    Fixup fixup = newFixup(EXTDEF, token, null, extdef);
+                    fixup.position = writer.position();
+                    wait(fixup, extdef);
+                }
+                writer.hex(address, 6);
+            }
+            writer.endRecord();
+        }
+        //EXTREF
+        else if (token.operator.equals("EXTREF")) {
+            packer.flush();
+            writer.record('R');
+            for (String extref : token.operand)
+                writer.padded(extref, 6);
+            writer.endRecord();
+        }
+        //일반 명령어
+        else if (inst != null) {
+            int target = -1;
+            Fixup fixup = null;
+            //operand가 없는 명령어(RSUB 등)는 참조할 주소가 없다
+            if (TokenTable.usesTarget(token, inst) && token.operand.length > 0) {
+                target = section.findTarget(token);
+                //아직 정의되지 않았으면 외부 참조와 같은 code를 출력하고 기다린다
+                String operand = token.operand[0];
+                String name = operand.startsWith("=") ? operand : operand.replace("@", "");
+                if (operand.length() > 0 && (target == -1 && section.symTab.indexOf(name) == -1 || pendingEquateMap.containsKey(name))) {
+                    target = -1;
+                    fixup = newFixup(INSTRUCTION, token, inst);
+                    wait(fixup, name);
+                }
+            }
+            putCode(token, TokenTable.encode(token, inst, target), fixup);
+        }
+        //LTORG나 END : 이 토큰의 주소부터 할당된 literal pool
+        else if (token.operator.equals("LTORG") || token.operator.equals("END")) {
+            LiteralTable littab = section.literalTab;
+            int offset = 0;
+            int end = token.location + token.byteSize;
+            for (int i = littab.poolIndex(token.location); i < littab.size() && littab.getLocation(i) < end; i++) {
+                String literal = littab.literalList.get(i);
+                offset = putData(offset, literal, 0, literal.length(), littab.getType(i) == LiteralTable.TYPE_X);
+            }
+            packer.add(token.location, dataBuffer, 0, offset);
+        }
+        //BYTE
+        else if (token.operator.equals("BYTE")) {
+            String value = token.operand[0];
+            packer.add(token.location, dataBuffer, 0, putData(0, value, 2, value.length() - 1, value.startsWith("X")));
+        }
+        //WORD : 식의 값은 지금까지 정의된 symbol로 계산하고, 정의되지 않은 symbol을 기다린다
+        else if (token.operator.equals("WORD")) {
+            Fixup fixup = newFixup(WORD, token, null);
+            fixup.expression = Expression.compile(token.operand[0]);
+            for (String name : fixup.expression.nameList) {
+                if (!isDefined(name))
+                    wait(fixup, name);
+            }
+            wordList.add(fixup);
+            putCode(token, fixup.expression.evaluate(section.symTab, token.location), fixup);
+        }
+    }
+
+    /**
+     * EQU의 값을 정한다. 식의 symbol이 모두 정의되었으면 바로 계산하고,
+     * 아직 정의되지 않은 symbol이 있으면 fixup으로 남겨 그 symbol들이 모두 정의될 때 계산한다.
+     *
+     * @return : 값을 정하지 못해 기다리면 true
+     */
+    private boolean defineEquate(Token token) throws IOException {
+        ArrayList<Equate> equateList = section.equateList;
+        if (equateList.isEmpty())
+            return false;
+        Fixup fixup = newFixup(EQUATE, token, null);
+        fixup.expression = equateList.get(equateList.size() - 1).expression;
+        for (String name : fixup.expression.nameList) {
+            if (!isDefined(name))
+                wait(fixup, name);
+        }
+        if (fixup.waiting == 0) {
+            assembler.resolveEquates(section);
+            return false;
+        }
+        equateList.clear();
+        pendingEquateMap.put(token.label, fixup);
+        return true;
+    }
+
+    /**
+     * 기다리던 EQU의 값을 정하고, 그 label을 기다리던 참조들을 고친다.
+     */
+    private void completeEquate(Fixup fixup) throws IOException {
+        Token token = fixup.token;
+        SymbolTable symtab = section.symTab;
+        symtab.modifySymbol(token.label, fixup.expression.evaluate(symtab, token.location));
+        symtab.setAbsolute(token.label, fixup.expression.relocation(symtab) == 0);
+        pendingEquateMap.remove(token.label);
+        resolve(token.label);
+    }
+
+    /**
+     * name이 값이 정해진 symbol이면 true
+     */
+    private boolean isDefined(String name) {
+        return section.symTab.indexOf(name) != -1 && !pendingEquateMap.containsKey(name);
+    }
+
+    /**
+     * name이 정의되었을 때 기다리던 참조들 중 모든 이름이 정의된 것의 값을 고친다.
+     */
+    private void resolve(String name) throws IOException {
+        ArrayList<Fixup> fixupList = fixupMap.remove(name);
+        if (fixupList == null)
+            return;
+        for (Fixup fixup : fixupList) {
+            if (--fixup.waiting == 0)
+                complete(fixup);
+        }
+    }
+
+    /**
+     * LTORG, END에서 주소가 할당된 literal을 기다리던 참조들을 고친다.
+     */
+    private void resolveLiterals() throws IOException {
+        ArrayList<String> assigned = new ArrayList<>();
+        for (String literal : pendingLiteralSet) {
+            if (section.literalTab.searchOperand(literal) != -1)
+                assigned.add(literal);
+        }
+        for (String literal : assigned) {
+            pendingLiteralSet.remove(literal);
+            resolve(literal);
+        }
+    }
+
+    /**
+     * 기다리던 이름이 모두 정의된 참조의 값을 다시 만들어 고쳐 쓴다.
+     */
+    private void complete(Fixup fixup) throws IOException {
+        Token token = fixup.token;
+        switch (fixup.kind) {
+            case INSTRUCTION:
+                patch(fixup, TokenTable.encode(token, fixup.inst, section.findTarget(token)), token.byteSize);
+                break;
+            case WORD:
+                patch(fixup, fixup.expression.evaluate(section.symTab, token.location), token.byteSize);
+                break;
+            case EXTDEF:
+                writer.patchHex(fixup.position, section.symTab.search(fixup.names[0]), 6);
+                break;
+            case EQUATE:
+                completeEquate(fixup);
+                break;
+        }
+    }
+
+    /**
+     * section을 마무리한다. 남은 T 레코드를 출력하고, 끝까지 정의되지 않은 참조를 M 레코드로 출력한 뒤 E 레코드를 쓴다.
+     */
+    private void finishSection() throws IOException {
+        //section이 끝날 때까지 값을 정하지 못한 EQU는 정의되지 않은(외부) symbol을 참조하거나 순환 참조한다
+        //(Assembler.resolveEquates와 같은 오류)
+        for (Fixup fixup : pendingEquateMap.values()) {
+            for (String name : fixup.expression.nameList) {
+                if (section.symTab.indexOf(name) == -1)
+                    throw new IllegalStateException("undefined symbol in EQU " + fixup.token.label + " : " + name);
+            }
+        }
+        if (!pendingEquateMap.isEmpty())
+            throw new IllegalStateException("circular EQU : " + pendingEquateMap.keySet().iterator().next());
+        packer.flush();
+        writer.patchHex(lengthPosition, locctr, 6);
+
+        //M 레코드는 토큰 순서대로. WORD는 외부 참조가 없어도 상대 주소이면 M 레코드가 필요하므로 모두 포함한다
+        IdentityHashMap<Fixup, Boolean> remainSet = new IdentityHashMap<>();
+        for (ArrayList<Fixup> fixupList : fixupMap.values())
+            for (Fixup fixup : fixupList)
+                remainSet.put(fixup, Boolean.TRUE);
+        for (Fixup fixup : wordList)
+            remainSet.put(fixup, Boolean.TRUE);
+        ArrayList<Fixup> remainList = new ArrayList<>(remainSet.keySet());
+        remainList.sort((a, b) -> a.index - b.index);
+        for (Fixup fixup : remainList) {
+            Token token = fixup.token;
+            if (fixup.kind == INSTRUCTION)
+                writer.record('M').hex(token.location + 1, 6).text("05+").text(token.operand[0]).endRecord();
+            else if (fixup.kind == WORD) {
+                //외부 symbol을 기다리던 WORD는 나중에 정의된 내부 symbol까지 넣어 다시 계산한다
+                if (fixup.waiting > 0)
+                    patch(fixup, fixup.expression.evaluate(section.symTab, token.location), token.byteSize);
+                for (String modification : TokenTable.modificationsOf(fixup.expression, section.symTab, token.location, sectionName))
+                    writer.record('M').text(modification).endRecord();
+            }
+        }
+        fixupMap.clear();
+        wordList.clear();
+        pendingLiteralSet.clear();
+
+        writer.record('E');
+        if (start)
+            writer.hex(0, 6);
+        writer.endRecord();
+        //section 사이의 빈 줄
+        writer.endRecord();
+        section = null;
+    }
+
+    private Fixup newFixup(int kind, Token token, Instruction inst, String... names) {
+        Fixup fixup = new Fixup();
+        fixup.kind = kind;
+        fixup.token = token;
+        fixup.inst = inst;
+        fixup.names = names;
+        fixup.index = tokenIndex;
+        return fixup;
+    }
+
+    /**
+     * fixup이 name의 정의를 기다리도록 등록한다. 같은 이름은 한 번만 기다린다.
+     */
+    private void wait(Fixup fixup, String name) {
+        ArrayList<Fixup> fixupList = fixupMap.computeIfAbsent(name, key -> new ArrayList<>());
+        if (!fixupList.isEmpty() && fixupList.get(fixupList.size() - 1) == fixup)
+            return;
+        fixupList.add(fixup);
+        fixup.waiting++;
+        if (name.startsWith("="))
+            pendingLiteralSet.add(name);
+    }
+
+    /**
+     * value의 하위 token.byteSize byte를 big endian으로 T 레코드에 넣는다. (TextRecordPacker.reserve 참고)
+     *
+     * @param fixup : 이 code를 나중에 고쳐야 하면 해당 fixup
+     */
+    private void putCode(Token token, int value, Fixup fixup) throws IOException {
+        int offset = packer.reserve(token.location, token.byteSize);
+        if (fixup != null) {
+            fixup.runOffset = offset;
+            runFixupList.add(fixup);
+        }
+        for (int shift = (token.byteSize - 1) * 8; shift >= 0; shift -= 8)
+            packer.code[offset++] = (byte) (value >>> shift);
+    }
+
+    /**
+     * data[begin, end) 범위의 상수를 byte로 바꿔 dataBuffer의 offset 위치부터 넣는다. (TokenTable.appendData와 같은 규칙)
+     *
+     * @return : 다음 byte의 위치
+     */
+    private int putData(int offset, String data, int begin, int end, boolean hex) {
+        if (offset + end - begin > dataBuffer.length)
+            dataBuffer = java.util.Arrays.copyOf(dataBuffer, Math.max(dataBuffer.length * 2, offset + end - begin));
+        if (hex) {
+            for (int i = begin; i + 1 < end; i += 2)
+                dataBuffer[offset++] = (byte) (Character.digit(data.charAt(i), 16) << 4 | Character.digit(data.charAt(i + 1), 16));
+        } else {
+            for (int i = begin; i < end; i++)
+                dataBuffer[offset++] = (byte) data.charAt(i);
+        }
+        return offset;
+    }
+
+    /**
+     * 참조의 값을 고친다. 아직 출력되지 않은 T 레코드이면 버퍼를, 출력되었으면 파일의 해당 위치를 고친다.
+     */
+    private void patch(Fixup fixup, int value, int size) throws IOException {
+        if (fixup.position == -1) {
+            for (int i = 0, shift = (size - 1) * 8; i < size; i++, shift -= 8)
+                packer.code[fixup.runOffset + i] = (byte) (value >>> shift);
+        } else
+            writer.patchHex(fixup.position, value, size * 2);
+    }
+}
@@ -0,0 +1,323 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 벤치마크와 규모 테스트를 위한 SIC/XE 프로그램 생성기.
+ * inst.data의 명령어 집합(InstTable)을 바탕으로, 지정한 줄 수와 section 수에 맞춰
+ * 이 어셈블러가 처리할 수 있는 control section 방식의 프로그램을 만든다. 같은 설정과 seed로 만든 프로그램은 항상 같다.
+ * <p>
+ * 조절할 수 있는 값은 아래 필드들이며, 명령행에서는 key=value 형태로 지정한다.
+ * 예) 거대한 symbol table : java ProgramGenerator inst.data 1000000 1 big.txt extdefRatio=0 <br>
+ * 예) 긴 literal pool : java ProgramGenerator inst.data 100000 10 pool.txt literalRatio=0.5 literalsPerPool=2000
+ */
+public class ProgramGenerator {
+    int lines;                      //만들 프로그램의 대략적인 줄 수
+    int sections;                   //control section 수
+    long seed = 20160290;           //난수 seed
+
+    double extdefRatio = 0.01;      //label 중 EXTDEF로 내보내는 비율
+    int extrefCount = 4;            //section마다 EXTREF로 가져오는 외부 symbol 수
+    double externalRatio = 0.05;    //메모리 참조 명령어 중 외부 symbol을 참조하는 비율 (format 4로 만든다)
+    double literalRatio = 0.1;      //메모리 참조 명령어 중 literal을 사용하는 비율
+    int literalsPerPool = 8;        //LTORG 하나에 모이는 literal 수
+    double equRatio = 0.02;         //EQU 줄의 비율 (*, 단일 symbol, A-B)
+    double format4Ratio = 0.05;     //내부 symbol을 참조하는 명령어 중 format 4의 비율
+    double reserveRatio = 0.02;     //RESB/RESW 줄의 비율
+    int maxReserve = 64;            //RESB/RESW 하나가 예약하는 최대 byte 수
+    double dataRatio = 0.02;        //BYTE/WORD 줄의 비율
+
+    private static final String[] REGISTERS = {"A", "X", "L", "B", "S", "T", "F"};
+
+    /* 명령어를 형식별로 분류해 둔 목록 */
+    private final ArrayList<Instruction> format1List = new ArrayList<>();
+    private final ArrayList<Instruction> format2List = new ArrayList<>();
+    private final ArrayList<Instruction> memoryList = new ArrayList<>();
+    private final ArrayList<Instruction> noOperandList = new ArrayList<>();
+
+    /**
+     * 클래스 초기화. 명령어 집합을 형식별로 분류한다.
+     *
+     * @param instTable : 사용할 명령어 집합
+     * @param lines     : 만들 프로그램의 대략적인 줄 수
+     * @param sections  : control section 수
+     */
+    public ProgramGenerator(InstTable instTable, int lines, int sections) {
+        this.lines = lines;
+        this.sections = Math.max(1, sections);
+        for (Instruction inst : instTable.instMap.values()) {
+            if (inst.format == 1)
+                format1List.add(inst);
+            //레지스터가 아닌 숫자를 받는 SVC, SHIFTL, SHIFTR는 제외
+            else if (inst.format == 2 && !inst.instruction.startsWith("S"))
+                format2List.add(inst);
+            else if (inst.format == 3 && inst.operandNum == 0)
+                noOperandList.add(inst);
+            else if (inst.format == 3)
+                memoryList.add(inst);
+        }
+        //HashMap 순서에 영향을 받지 않도록 이름순 정렬
+        format1List.sort((a, b) -> a.instruction.compareTo(b.instruction));
+        format2List.sort((a, b) -> a.instruction.compareTo(b.instruction));
+        memoryList.sort((a, b) -> a.instruction.compareTo(b.instruction));
+        noOperandList.sort((a, b) -> a.instruction.compareTo(b.instruction));
+    }
+
+    /**
+     * 사용 예 : java ProgramGenerator inst.data lines sections output [key=value ...]
+     */
+    public static void main(String[] args) {
+        ProgramGenerator generator = new ProgramGenerator(new InstTable(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        for (int i = 4; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            generator.setOption(option[0], option[1]);
+        }
+        generator.write(args[3]);
+    }
+
+    /**
+     * 이름으로 설정값을 바꾼다. 명령행 인자 처리에 사용한다.
+     *
+     * @param key   : 필드 이름
+     * @param value : 값
+     * @return : 이어서 설정하기 위한 자기 자신
+     */
+    public ProgramGenerator setOption(String key, String value) {
+        switch (key) {
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            case "extdefRatio":
+                extdefRatio = Double.parseDouble(value);
+                break;
+            case "extrefCount":
+                extrefCount = Integer.parseInt(value);
+                break;
+            case "externalRatio":
+                externalRatio = Double.parseDouble(value);
+                break;
+            case "literalRatio":
+                literalRatio = Double.parseDouble(value);
+                break;
+            case "literalsPerPool":
+                literalsPerPool = Integer.parseInt(value);
+                break;
+            case "equRatio":
+                equRatio = Double.parseDouble(value);
+                break;
+            case "format4Ratio":
+                format4Ratio = Double.parseDouble(value);
+                break;
+            case "reserveRatio":
+                reserveRatio = Double.parseDouble(value);
+                break;
+            case "maxReserve":
+                maxReserve = Integer.parseInt(value);
+                break;
+            case "dataRatio":
+                dataRatio = Double.parseDouble(value);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option : " + key);
+        }
+        return this;
+    }
+
+    /**
+     * 프로그램을 만들어 파일로 저장한다.
+     *
+     * @param fileName : 저장되는 파일 이름
+     */
+    public void write(String fileName) {
+        write(fileName, generate());
+    }
+
+    /**
+     * generate()로 만든 프로그램을 파일로 저장한다.
+     *
+     * @param fileName : 저장되는 파일 이름
+     * @param program  : 프로그램의 각 줄
+     */
+    public static void write(String fileName, List<String> program) {
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(fileName))) {
+            for (String line : program) {
+                bufferedWriter.write(line);
+                bufferedWriter.newLine();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 프로그램을 만든다.
+     *
+     * @return : 프로그램의 각 줄
+     */
+    public List<String> generate() {
+        Random random = new Random(seed);
+        ArrayList<String> program = new ArrayList<>(lines + sections * 8);
+        int body = Math.max(4, lines / sections - 6);
+        //EXTDEF로 내보내는 label의 간격. 0이면 내보내지 않는다
+        int exportStep = extdefRatio <= 0 ? 0 : Math.max(1, (int) Math.round(1 / extdefRatio));
+        int exportCount = exportStep == 0 ? 0 : (body + exportStep - 1) / exportStep;
+
+        for (int section = 0; section < sections; section++) {
+            program.add(sectionName(section) + "\t" + (section == 0 ? "START" : "CSECT") + "\t0");
+
+            //EXTDEF
+            ArrayList<String> nameList = new ArrayList<>();
+            for (int j = 0; j < exportCount; j++)
+                nameList.add(exportName(section, j, exportCount));
+            addNameLines(program, "EXTDEF", nameList);
+
+            //EXTREF : 다음 section들이 내보낸 symbol을 차례대로 가져온다
+            ArrayList<String> externalList = new ArrayList<>();
+            if (sections > 1 && exportCount > 0) {
+                for (int k = 0; k < extrefCount && k / (sections - 1) < exportCount; k++)
+                    externalList.add(exportName((section + 1 + k % (sections - 1)) % sections, k / (sections - 1), exportCount));
+            }
+            addNameLines(program, "EXTREF", externalList);
+
+            int pool = 0;       //LTORG 전까지 모인 literal 수
+            int literalId = 0;  //section 안에서 literal을 서로 다르게 만들기 위한 번호
+            for (int i = 0; i < body; i++) {
+                String label = label(section, i, exportStep, exportCount);
+                double r = random.nextDouble();
+                if ((r -= reserveRatio) < 0) {
+                    int size = 1 + random.nextInt(Math.max(1, maxReserve));
+                    if (random.nextBoolean())
+                        program.add(label + "\tRESB\t" + size);
+                    else
+                        program.add(label + "\tRESW\t" + Math.max(1, size / 3));
+                } else if ((r -= equRatio) < 0 && i >= 2) {
+                    String a = label(section, random.nextInt(i), exportStep, exportCount);
+                    String b = label(section, random.nextInt(i), exportStep, exportCount);
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            program.add(label + "\tEQU\t*");
+                            break;
+                        case 1:
+                            program.add(label + "\tEQU\t" + a);
+                            break;
+                        default:
+                            program.add(label + "\tEQU\t" + a + "-" + b);
+                            break;
+                    }
+                } else if ((r -= dataRatio) < 0) {
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            program.add(label + "\tBYTE\tX'" + String.format("%02X", random.nextInt(256)) + "'");
+                            break;
+                        case 1:
+                            program.add(label + "\tBYTE\tC'" + (char) ('A' + random.nextInt(26)) + "'");
+                            break;
+                        default:
+                            if (!externalList.isEmpty() && random.nextBoolean())
+                                program.add(label + "\tWORD\t" + externalList.get(random.nextInt(externalList.size())));
+                            else
+                                program.add(label + "\tWORD\t" + random.nextInt(4096));
+                            break;
+                    }
+                } else {
+                    String target = label(section, Math.max(0, Math.min(body - 1, i - 8 + random.nextInt(17))), exportStep, exportCount);
+                    String line = instruction(random, label, target, externalList, section, literalId);
+                    if (line.contains("\t=")) {
+                        literalId++;
+                        pool++;
+                    }
+                    program.add(line);
+                }
+                //literal pool이 literalsPerPool개 모이면 LTORG
+                if (pool >= literalsPerPool) {
+                    program.add("\tLTORG");
+                    pool = 0;
+                }
+            }
+            program.add("\tRSUB\t\tRETURN");
+            if (section == sections - 1)
+                program.add("\tEND\t" + label(0, 0, exportStep, exportCount));
+            else if (pool > 0)
+                program.add("\tLTORG");
+        }
+        return program;
+    }
+
+    /**
+     * 명령어 한 줄을 만든다.
+     *
+     * @param target       : 내부 참조에 사용할 근처의 label
+     * @param externalList : EXTREF로 가져온 symbol
+     * @param literalId    : 새 literal을 만들 때 사용할 번호
+     */
+    private String instruction(Random random, String label, String target, ArrayList<String> externalList, int section, int literalId) {
+        int kind = random.nextInt(20);
+        if (kind == 0 && !format1List.isEmpty())
+            return label + "\t" + pick(random, format1List).instruction;
+        if (kind == 1 && !noOperandList.isEmpty())
+            return label + "\t" + pick(random, noOperandList).instruction + "\t\tNO OPERAND";
+        if (kind < 6 && !format2List.isEmpty()) {
+            Instruction inst = pick(random, format2List);
+            String operand = REGISTERS[random.nextInt(REGISTERS.length)];
+            if (inst.operandNum > 1)
+                operand += "," + REGISTERS[random.nextInt(REGISTERS.length)];
+            return label + "\t" + inst.instruction + "\t" + operand;
+        }
+
+        String operator = pick(random, memoryList).instruction;
+        double r = random.nextDouble();
+        //literal
+        if ((r -= literalRatio) < 0) {
+            String literal = random.nextBoolean()
+                    ? "=X'" + String.format("%06X", (section * 7919 + literalId) & 0xFFFFFF) + "'"
+                    : "=C'" + Integer.toString(literalId, 36).toUpperCase() + "'";
+            return label + "\t" + operator + "\t" + literal;
+        }
+        //외부 참조
+        if ((r -= externalRatio) < 0 && !externalList.isEmpty())
+            return label + "\t+" + operator + "\t" + externalList.get(random.nextInt(externalList.size())) + "\tEXTERNAL";
+        //내부 참조
+        if (random.nextDouble() < format4Ratio)
+            operator = "+" + operator;
+        switch (random.nextInt(8)) {
+            case 0:
+                return label + "\t" + operator + "\t#" + random.nextInt(2048);
+            case 1:
+                return label + "\t" + operator + "\t@" + target;
+            case 2:
+                return label + "\t" + operator + "\t" + target + ",X";
+            default:
+                return label + "\t" + operator + "\t" + target;
+        }
+    }
+
+    /**
+     * EXTDEF 또는 EXTREF 줄을 한 줄에 8개씩 나누어 추가한다.
+     */
+    private static void addNameLines(ArrayList<String> program, String directive, ArrayList<String> nameList) {
+        for (int i = 0; i < nameList.size(); i += 8)
+            program.add("\t" + directive + "\t" + String.join(",", nameList.subList(i, Math.min(nameList.size(), i + 8))));
+    }
+
+    private static Instruction pick(Random random, ArrayList<Instruction> instList) {
+        return instList.get(random.nextInt(instList.size()));
+    }
+
+    private static String sectionName(int section) {
+        return "S" + Integer.toString(section, 36).toUpperCase();
+    }
+
+    /**
+     * section의 index번째 줄의 label. 내보내는 label은 section 사이에서 겹치지 않는 이름을 사용한다.
+     */
+    private static String label(int section, int index, int exportStep, int exportCount) {
+        if (exportStep > 0 && index % exportStep == 0)
+            return exportName(section, index / exportStep, exportCount);
+        return "L" + Integer.toString(index, 36).toUpperCase();
+    }
+
+    private static String exportName(int section, int export, int exportCount) {
+        return "X" + Long.toString((long) section * exportCount + export, 36).toUpperCase();
+    }
+}
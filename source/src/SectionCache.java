@@ -0,0 +1,204 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * incremental 어셈블을 위한 section 단위의 disk cache.
+ * section의 소스 문장(주석 라인 제외)을 SHA-256으로 hash하여 key로 사용하고,
+ * 그 section의 symbol table, literal table, 길이, 만들어진 object program 레코드를 key 이름의 파일로 저장한다.
+ * section들은 EXTDEF/EXTREF의 이름으로만 서로를 참조하므로, 내용이 같은 section은 항상 같은 결과를 만든다.
+ * 따라서 cache에 있는 section은 pass1, pass2를 건너뛰고 저장된 결과를 그대로 사용한다.
+ * <p>
+ * key에는 inst.data의 내용, T 레코드의 최대 길이와 파일 형식의 버전도 포함되므로 명령어 명세나 레코드 길이가 바뀌면 모든 section을 다시 어셈블한다.
+ * 오래된 파일은 지우지 않으므로 필요하면 cache 폴더를 직접 비운다.
+ * <p>
+ * 파일 형식 (DataOutputStream) :
+ * version(int), symbol 수(int), [이름(UTF), 주소(int)]..., literal 수(int), [내용(UTF), 타입(byte), 주소(int)]...,
+ * section 길이(int), 레코드 길이(int), 레코드(byte[])
+ */
+public class SectionCache {
+    private static final int VERSION = 2;
+
+    /**
+     * cache 파일을 저장하는 폴더
+     */
+    final Path directory;
+    /**
+     * 모든 key의 앞에 들어가는 hash (파일 형식의 버전 + T 레코드의 최대 길이 + inst.data의 내용)
+     */
+    private final byte[] salt;
+    /**
+     * section별 key
+     */
+    private final Map<TokenTable, String> keyMap = new ConcurrentHashMap<>();
+    /**
+     * cache에서 읽은 section의 object program 레코드
+     */
+    private final Map<TokenTable, byte[]> codeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 클래스 초기화. cache 폴더가 없으면 만든다.
+     *
+     * @param directory : cache 폴더
+     * @param instFile  : instruction 명세 파일 이름. 내용이 key에 포함된다
+     * @param maxRecordLength : 저장하는 레코드를 만들 때 사용한 T 레코드의 최대 길이
+     */
+    public SectionCache(String directory, String instFile, int maxRecordLength) throws IOException {
+        this.directory = Paths.get(directory);
+        Files.createDirectories(this.directory);
+        MessageDigest digest = sha256();
+        digest.update((byte) VERSION);
+        digest.update((byte) maxRecordLength);
+        digest.update(Files.readAllBytes(Paths.get(instFile)));
+        salt = digest.digest();
+    }
+
+    /**
+     * 새 section의 hash를 시작한다.
+     *
+     * @return : salt가 들어간 MessageDigest
+     */
+    MessageDigest newDigest() {
+        MessageDigest digest = sha256();
+        digest.update(salt);
+        return digest;
+    }
+
+    /**
+     * section의 소스 문장 하나를 hash에 넣는다.
+     */
+    static void update(MessageDigest digest, String line) {
+        digest.update(line.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    /**
+     * SourceReader.line()으로 받은 소스 문장 하나를 hash에 넣는다. 같은 문장이면 update(digest, String)과 같은 hash가 된다.
+     */
+    static void update(MessageDigest digest, ByteBuffer line) {
+        digest.update(line);
+        digest.update((byte) '\n');
+    }
+
+    /**
+     * section의 key를 확정하고, cache에 같은 key의 파일이 있으면 table과 레코드를 section에 채운다.
+     *
+     * @param section : 소스 문장을 모두 읽은 section
+     * @param digest  : section의 문장들을 넣은 MessageDigest
+     * @return : cache에서 읽었으면 true. 이 경우 pass1, pass2를 하지 않는다
+     */
+    boolean load(TokenTable section, MessageDigest digest) {
+        String key = toHex(digest.digest());
+        keyMap.put(section, key);
+        Path file = directory.resolve(key);
+        if (!Files.isRegularFile(file))
+            return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != VERSION)
+                return false;
+            //table은 다 읽은 뒤에 채운다 (파일이 깨져있으면 section을 건드리지 않는다)
+            int symbolCount = in.readInt();
+            String[] symbols = new String[symbolCount];
+            int[] symbolLocations = new int[symbolCount];
+            for (int i = 0; i < symbolCount; i++) {
+                symbols[i] = in.readUTF();
+                symbolLocations[i] = in.readInt();
+            }
+            int literalCount = in.readInt();
+            String[] literals = new String[literalCount];
+            int[] literalTypes = new int[literalCount];
+            int[] literalLocations = new int[literalCount];
+            for (int i = 0; i < literalCount; i++) {
+                literals[i] = in.readUTF();
+                literalTypes[i] = in.readByte();
+                literalLocations[i] = in.readInt();
+            }
+            int length = in.readInt();
+            byte[] code = new byte[in.readInt()];
+            in.readFully(code);
+
+            for (int i = 0; i < symbolCount; i++)
+                section.symTab.putSymbol(symbols[i], symbolLocations[i]);
+            for (int i = 0; i < literalCount; i++)
+                section.literalTab.restoreLiteral(literals[i], literalTypes[i], literalLocations[i]);
+            section.setLocation(0, length);
+            codeMap.put(section, code);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * section을 cache에서 읽었는지 알려준다.
+     */
+    boolean isCached(TokenTable section) {
+        return codeMap.containsKey(section);
+    }
+
+    /**
+     * cache에서 읽은 section의 object program 레코드를 리턴한다.
+     *
+     * @return : 레코드. cache에서 읽지 않은 section이면 null
+     */
+    byte[] getCode(TokenTable section) {
+        return codeMap.get(section);
+    }
+
+    /**
+     * 새로 어셈블한 section의 결과를 cache에 저장한다. 다른 process와 동시에 써도 깨지지 않도록 임시 파일에 쓴 뒤 이름을 바꾼다.
+     *
+     * @param section : pass2까지 끝난 section
+     * @param code    : section의 object program 레코드
+     */
+    void store(TokenTable section, byte[] code) {
+        String key = keyMap.get(section);
+        if (key == null || isCached(section))
+            return;
+        try {
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(VERSION);
+                SymbolTable symtab = section.symTab;
+                out.writeInt(symtab.size());
+                for (int i = 0; i < symtab.size(); i++) {
+                    out.writeUTF(symtab.symbolList.get(i));
+                    out.writeInt(symtab.getLocation(i));
+                }
+                LiteralTable littab = section.literalTab;
+                out.writeInt(littab.size());
+                for (int i = 0; i < littab.size(); i++) {
+                    out.writeUTF(littab.literalList.get(i));
+                    out.writeByte(littab.getType(i));
+                    out.writeInt(littab.getLocation(i));
+                }
+                out.writeInt(section.getLocation(0));
+                out.writeInt(code.length);
+                out.write(code);
+            }
+            Files.move(temp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 소스 파일을 memory-map하여 한 줄씩 읽는 reader.
+ * 줄바꿈과 탭의 위치를 MappedByteBuffer에서 바로 찾으며, 문자열로 decode하지 않는다.
+ * SIC/XE 소스는 ASCII이므로 byte 하나가 문자 하나이다.
+ * <p>
+ * nextLine()이 true를 리턴하면 현재 줄의 범위와 필드(label, operator, operand)의 범위가 buffer의 위치로 정해진다.
+ * 필드를 나누는 규칙은 Token.parsing()과 같다. 주석은 operand 뒤이므로 따로 기억하지 않는다.
+ * <p>
+ * 한 번에 WINDOW byte까지만 map하고, 줄이 window의 끝에 걸리면 그 줄의 시작부터 다시 map하므로 2GB보다 큰 파일도 읽을 수 있다.
+ */
+public class SourceReader implements Closeable {
+    private static final long WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private long windowStart;       //buffer의 0번 byte의 파일에서의 위치
+    private MappedByteBuffer buffer;
+    private ByteBuffer view;        //line()이 리턴하는 buffer의 복사본. 줄마다 새로 만들지 않는다
+    private int next;               //buffer에서 다음 줄이 시작하는 위치
+    private byte[] scratch = new byte[256];    //lineString()에서 줄을 복사하는 공간
+
+    /* 현재 줄과 필드의 buffer에서의 범위 [begin, end). label은 lineBegin에서 시작한다 */
+    int lineBegin, lineEnd;
+    int labelEnd;
+    int operatorBegin, operatorEnd;
+    int operandBegin, operandEnd;
+    /**
+     * 현재 줄에 있는 필드의 수 (Token.parsing()과 같이 1 ~ 4). 2 이상이면 operator, 3 이상이면 operand가 있다
+     */
+    int fields;
+
+    /**
+     * 파일을 열고 처음 window를 map한다.
+     *
+     * @param fileName : 읽을 파일 이름
+     */
+    public SourceReader(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        size = channel.size();
+        map(0);
+    }
+
+    /**
+     * 다음 줄로 넘어가고 필드를 나눈다. 줄 끝의 \n, \r\n은 줄에 포함하지 않는다. (BufferedReader.readLine()과 같다)
+     *
+     * @return : 더 읽을 줄이 없으면 false
+     */
+    public boolean nextLine() throws IOException {
+        int end = find((byte) '\n', next, buffer.limit());
+        //window의 끝에 걸린 줄은 그 줄의 시작부터 다시 map한다
+        if (end == buffer.limit() && windowStart + end < size) {
+            if (next == 0)
+                throw new IOException("line too long : " + (windowStart + next));
+            map(windowStart + next);
+            end = find((byte) '\n', 0, buffer.limit());
+        }
+        if (next >= buffer.limit())
+            return false;
+        lineBegin = next;
+        next = end + 1;
+        if (end > lineBegin && buffer.get(end - 1) == '\r')
+            end--;
+        lineEnd = end;
+        split();
+        return true;
+    }
+
+    /**
+     * 현재 줄을 label, operator, operand, 주석으로 나눈다. split("\t")과 같이 끝에 있는 빈 필드는 없는 것으로 취급한다.
+     */
+    private void split() {
+        labelEnd = find((byte) '\t', lineBegin, lineEnd);
+        int operatorEnd = labelEnd < lineEnd ? find((byte) '\t', labelEnd + 1, lineEnd) : lineEnd;
+        int operandEnd = operatorEnd < lineEnd ? find((byte) '\t', operatorEnd + 1, lineEnd) : lineEnd;
+
+        if (operandEnd < lineEnd && operandEnd + 1 < lineEnd)
+            fields = 4;
+        else if (operatorEnd < lineEnd && operatorEnd + 1 < operandEnd)
+            fields = 3;
+        else if (labelEnd < lineEnd && labelEnd + 1 < operatorEnd)
+            fields = 2;
+        else
+            fields = 1;
+        this.operatorBegin = labelEnd + 1;
+        this.operatorEnd = operatorEnd;
+        this.operandBegin = operatorEnd + 1;
+        this.operandEnd = operandEnd;
+    }
+
+    /**
+     * buffer[begin, end)가 text와 같은지 비교한다.
+     */
+    public boolean matches(int begin, int end, String text) {
+        if (end - begin != text.length())
+            return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer.get(begin + i) != text.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * buffer의 index번째 byte
+     */
+    public byte get(int index) {
+        return buffer.get(index);
+    }
+
+    /**
+     * buffer[begin, end)를 dst에 복사한다.
+     */
+    public void get(int begin, int end, byte[] dst) {
+        buffer.get(begin, dst, 0, end - begin);
+    }
+
+    /**
+     * 현재 줄의 내용. position과 limit이 줄의 범위인 buffer이며, 다음 nextLine() 호출 때 바뀐다.
+     */
+    public ByteBuffer line() {
+        return view.limit(lineEnd).position(lineBegin);
+    }
+
+    /**
+     * 현재 줄을 문자열로 만든다. 주석에 ASCII가 아닌 문자가 있을 수 있으므로 UTF-8로 읽는다.
+     */
+    public String lineString() {
+        int length = lineEnd - lineBegin;
+        if (length > scratch.length)
+            scratch = new byte[Math.max(scratch.length * 2, length)];
+        get(lineBegin, lineEnd, scratch);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 파일의 position부터 최대 WINDOW byte를 map한다.
+     */
+    private void map(long position) throws IOException {
+        windowStart = position;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+        view = buffer.duplicate();
+        next = 0;
+    }
+
+    /**
+     * buffer[from, end)에서 처음 나오는 value의 위치. 없으면 end
+     */
+    private int find(byte value, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) == value)
+                return i;
+        }
+        return end;
+    }
+}
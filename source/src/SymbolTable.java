@@ -1,17 +1,26 @@
 import java.util.ArrayList;
-import java.util.Locale;
+import java.util.Arrays;
 
 /**
  * symbol과 관련된 데이터와 연산을 소유한다.
  * section 별로 하나씩 인스턴스를 할당한다.
+ * symbol 검색은 LiteralTable과 같은 open addressing 해시 테이블(int 배열)로 처리하여 symbol마다 객체를 더 만들지 않고,
+ * 주소값은 int 배열에 저장한다.
+ * 값이 주소가 아닌 절대값인 symbol(EQU의 결과가 절대값인 경우)은 absoluteList에 표시한다.
  */
 public class SymbolTable {
-    ArrayList<String> symbolList;
-    ArrayList<Integer> locationList;
+    ArrayList<String> symbolList;       //입력된 순서대로 symbol을 저장 (출력 순서 유지)
+    int[] locationList;                 //symbolList와 같은 index에 주소값을 저장
+    boolean[] absoluteList;             //symbolList와 같은 index에 절대값 여부를 저장 (기본값은 상대 주소)
+
+    private int[] hashTable;            //symbolList의 index + 1을 저장. 0이면 빈 칸
+    private int hashCount;              //hashTable에 배치된 symbol 수 (중복된 symbol은 처음 것만 배치한다)
 
     public SymbolTable() {
         symbolList = new ArrayList<>();
-        locationList = new ArrayList<>();
+        locationList = new int[16];
+        absoluteList = new boolean[16];
+        hashTable = new int[32];
     }
 
     /**
@@ -23,8 +32,23 @@ public class SymbolTable {
      *                 매칭되는 주소값의 변경은 modifySymbol()을 통해서 이루어져야 한다.
      */
     public void putSymbol(String symbol, int location) {
+        int index = symbolList.size();
+        if (index == locationList.length) {
+            locationList = Arrays.copyOf(locationList, index * 2);
+            absoluteList = Arrays.copyOf(absoluteList, index * 2);
+        }
         symbolList.add(symbol);
-        locationList.add(location);
+        locationList[index] = location;
+        //중복된 symbol은 처음 입력된 것을 기준으로 검색한다
+        int pos = find(symbol);
+        if (hashTable[pos] != 0)
+            return;
+        hashCount++;
+        //load factor를 1/2 이하로 유지
+        if (hashCount * 2 > hashTable.length)
+            rehash();
+        else
+            hashTable[pos] = index + 1;
     }
 
     /**
@@ -34,7 +58,17 @@ public class SymbolTable {
      * @param newLocation : 새로 바꾸고자 하는 주소값
      */
     public void modifySymbol(String symbol, int newLocation) {
-        locationList.set(symbolList.indexOf(symbol), newLocation);
+        locationList[indexOf(symbol)] = newLocation;
+    }
+
+    /**
+     * symbol의 값이 절대값인지 상대 주소인지 정한다. (EQU에서 사용)
+     *
+     * @param symbol   : 변경을 원하는 symbol의 label
+     * @param absolute : 절대값이면 true
+     */
+    public void setAbsolute(String symbol, boolean absolute) {
+        absoluteList[indexOf(symbol)] = absolute;
     }
 
     /**
@@ -44,15 +78,85 @@ public class SymbolTable {
      * @return symbol이 가지고 있는 주소값. 해당 symbol이 없을 경우 -1 리턴
      */
     public int search(String symbol) {
-        int address;
         //심볼이 있는지 확인
-        int index = symbolList.indexOf(symbol);
+        int index = indexOf(symbol);
         //있다면 locationList에서 location 값 가져오기
         if (index == -1)
-            address = -1;
-        else
-            address = locationList.get(index);
+            return -1;
+        return locationList[index];
+    }
+
+    /**
+     * symbol의 번호(symbolList에서의 index)를 리턴한다. 번호는 table이 유지되는 동안 바뀌지 않으므로
+     * 한 번 찾아두면 이후에는 getLocation()으로 주소를 읽을 수 있다.
+     *
+     * @param symbol : 검색을 원하는 symbol의 label
+     * @return : symbol의 번호. 해당 symbol이 없을 경우 -1 리턴
+     */
+    public int indexOf(String symbol) {
+        return hashTable[find(symbol)] - 1;
+    }
+
+    /**
+     * 저장된 symbol의 개수를 리턴한다.
+     *
+     * @return : symbol 개수
+     */
+    public int size() {
+        return symbolList.size();
+    }
+
+    /**
+     * index번째로 입력된 symbol의 주소값을 리턴한다.
+     *
+     * @param index : 원하는 symbol의 index
+     * @return : 주소값
+     */
+    public int getLocation(int index) {
+        return locationList[index];
+    }
+
+    /**
+     * index번째로 입력된 symbol의 값이 절대값이면 true. section의 시작 주소로 재배치하지 않는다.
+     *
+     * @param index : 원하는 symbol의 index
+     * @return : 절대값 여부
+     */
+    public boolean isAbsolute(int index) {
+        return absoluteList[index];
+    }
+
+    /**
+     * hashTable에서 symbol이 있는 칸을 찾는다. (linear probing)
+     *
+     * @return : symbol이 있는 칸. 없으면 symbol을 배치할 빈 칸
+     */
+    private int find(String symbol) {
+        int mask = hashTable.length - 1;
+        int pos = hash(symbol) & mask;
+        int entry;
+        while ((entry = hashTable[pos]) != 0) {
+            if (symbolList.get(entry - 1).equals(symbol))
+                return pos;
+            pos = (pos + 1) & mask;
+        }
+        return pos;
+    }
+
+    /**
+     * hashTable을 두 배로 늘리고 모든 symbol을 다시 배치한다. 중복된 symbol은 처음 것만 배치된다.
+     */
+    private void rehash() {
+        hashTable = new int[hashTable.length * 2];
+        for (int i = 0; i < symbolList.size(); i++) {
+            int pos = find(symbolList.get(i));
+            if (hashTable[pos] == 0)
+                hashTable[pos] = i + 1;
+        }
+    }
 
-        return address;
+    private static int hash(String symbol) {
+        int h = symbol.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
     }
 }
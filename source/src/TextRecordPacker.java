@@ -0,0 +1,120 @@
+import java.io.IOException;
+
+/**
+ * 주소순으로 들어오는 object code를 T 레코드로 묶어 ObjectProgramWriter에 쓰는 packer.
+ * 들어오는 code를 한 번만 훑으며 현재 레코드의 버퍼에 모으고, 주소가 이어지지 않거나 최대 길이를 넘게 되면
+ * 그때까지 모은 레코드 하나를 출력한다. 따라서 레코드의 길이를 미리 계산하기 위해 다시 읽지 않는다.
+ * <p>
+ * 토큰 하나의 code는 최대 길이 안에 들어가면 여러 레코드로 나누지 않는다. (기존 출력과 같다)
+ * 최대 길이보다 긴 code(큰 literal pool, BYTE 상수)만 최대 길이 단위로 나눈다.
+ * 최대 길이는 T 레코드의 길이 자리(16진수 2자리)에 들어가는 0xFF까지 설정할 수 있다.
+ * 교재의 loader와 같이 0x1E까지만 읽는 loader가 아니라면 길게 설정할수록 레코드 수가 줄어든다.
+ */
+public class TextRecordPacker {
+    /**
+     * 기본 최대 길이 (교재의 형식)
+     */
+    public static final int DEFAULT_MAX_LENGTH = 0x1E;
+    /**
+     * 설정할 수 있는 최대 길이. 길이 자리가 16진수 2자리이다
+     */
+    public static final int MAX_LENGTH = 0xFF;
+    /**
+     * 설정할 수 있는 최소 길이. format 4 명령어 하나는 나누지 않고 넣을 수 있어야 한다
+     */
+    public static final int MIN_LENGTH = 4;
+
+    private final ObjectProgramWriter writer;
+    private final int maxLength;
+    /**
+     * 현재 레코드의 code. 레코드가 출력되기 전에는 reserve()로 받은 위치의 값을 고칠 수 있다
+     */
+    final byte[] code;
+    private int start = -1;     //현재 레코드의 시작 주소. 비어 있으면 -1
+    private int length;         //현재 레코드의 byte 수
+
+    /**
+     * 클래스 초기화.
+     *
+     * @param writer    : 레코드를 쓸 곳
+     * @param maxLength : T 레코드 하나의 최대 byte 수
+     * @throws IllegalArgumentException : maxLength가 MIN_LENGTH ~ MAX_LENGTH 범위가 아닌 경우
+     */
+    public TextRecordPacker(ObjectProgramWriter writer, int maxLength) {
+        this.writer = writer;
+        this.maxLength = checkLength(maxLength);
+        this.code = new byte[maxLength];
+    }
+
+    /**
+     * 최대 길이가 설정할 수 있는 범위인지 확인한다.
+     *
+     * @return : maxLength
+     * @throws IllegalArgumentException : MIN_LENGTH ~ MAX_LENGTH 범위가 아닌 경우
+     */
+    public static int checkLength(int maxLength) {
+        if (maxLength < MIN_LENGTH || maxLength > MAX_LENGTH)
+            throw new IllegalArgumentException(String.format("T record length must be %X ~ %X : %X", MIN_LENGTH, MAX_LENGTH, maxLength));
+        return maxLength;
+    }
+
+    /**
+     * src[offset, offset + size)를 location 주소의 code로 추가한다.
+     * 최대 길이보다 길면 레코드를 채울 때마다 출력하며 나누어 넣는다.
+     */
+    public void add(int location, byte[] src, int offset, int size) throws IOException {
+        if (size == 0)
+            return;
+        if (size <= maxLength) {
+            System.arraycopy(src, offset, code, reserve(location, size), size);
+            return;
+        }
+        flush();
+        while (size > 0) {
+            int n = Math.min(size, maxLength);
+            System.arraycopy(src, offset, code, reserve(location, n), n);
+            location += n;
+            offset += n;
+            size -= n;
+        }
+    }
+
+    /**
+     * location 주소부터 size byte의 자리를 현재 레코드에 만든다.
+     * 주소가 이어지지 않거나 최대 길이를 넘으면 지금까지의 레코드를 출력하고 새로 시작한다.
+     *
+     * @param size : maxLength 이하
+     * @return : code 배열에서 자리의 시작 위치. 레코드가 출력되기 전까지 유효하다
+     */
+    public int reserve(int location, int size) throws IOException {
+        if (start != -1 && (location != start + length || length + size > maxLength))
+            flush();
+        if (start == -1)
+            start = location;
+        int offset = length;
+        length += size;
+        return offset;
+    }
+
+    /**
+     * 현재 레코드를 출력한다. 비어 있으면 아무것도 하지 않는다.
+     */
+    public void flush() throws IOException {
+        if (start == -1)
+            return;
+        writer.record('T').hex(start, 6).hex(length, 2);
+        long position = writer.position();
+        writer.hex(code, 0, length).endRecord();
+        start = -1;
+        length = 0;
+        flushed(position);
+    }
+
+    /**
+     * 레코드 하나를 출력한 뒤에 호출된다. 출력된 code의 위치가 필요한 경우 재정의한다.
+     *
+     * @param position : 파일에서 레코드의 code(16진수)가 시작하는 위치
+     */
+    protected void flushed(long position) {
+    }
+}
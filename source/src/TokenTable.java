@@ -1,5 +1,10 @@
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * 사용자가 작성한 프로그램 코드를 단어별로 분할 한 후, 의미를 분석하고, 최종 코드로 변환하는 과정을 총괄하는 클래스이다. <br>
@@ -18,14 +23,82 @@ public class TokenTable {
     public static final int pFlag=2;
     public static final int eFlag=1;
 
+    /* operand의 앞 글자로 해석한 addressing mode. name을 저장할 때 한 번만 계산한다 */
+    static final int MODE_IMMEDIATE = 1;    //#
+    static final int MODE_INDIRECT = 2;     //@
+    static final int MODE_LITERAL = 4;      //=
+    static final int MODE_INDEX = 8;        //X 레지스터
+
+    /* nameRefList의 상태. pass2에서 name을 처음 사용할 때 한 번만 검색한다 */
+    private static final int REF_RESOLVED = 16;
+    private static final int REF_SYMBOL = 32;   //nameRefList가 symTab의 번호
+    private static final int REF_LITERAL = 64;  //nameRefList가 literalTab의 번호
+
     /* Token을 다룰 때 필요한 테이블들을 링크시킨다. */
     SymbolTable symTab;
     LiteralTable literalTab;
     InstTable instTab;
 
 
-    /** 각 line을 의미별로 분할하고 분석하는 공간. */
-    ArrayList<Token> tokenList;
+    /**
+     * 각 line을 의미별로 분할하고 분석한 Token들의 목록.
+     * 토큰은 아래의 column들에 저장되며, 이 목록은 column을 읽어 Token을 만들어 주는 읽기 전용 view이다. (add는 putToken과 같다)
+     * view로 받은 Token을 고쳐도 table에는 반영되지 않으므로, 값을 바꿀 때는 store()나 set 함수를 사용한다.
+     */
+    List<Token> tokenList;
+
+    /*
+     * 토큰들을 column 단위로 저장하는 공간 (struct of arrays). index번째 토큰의 정보는 각 배열의 index번째 칸에 있다.
+     * label, operator, operand 문자열은 section의 nameList에 한 번씩만 저장하고 그 번호를 저장한다.
+     * 주석은 어느 pass에서도 사용하지 않으므로 저장하지 않는다.
+     */
+    private int count;                  //토큰 수
+    private int[] labelList;            //label의 name 번호
+    private int[] operatorList;         //operator의 name 번호
+    private int[] operandBegin;         //operandList에서 index번째 토큰의 operand가 시작하는 위치. 개수는 operandBegin[index + 1]과의 차이
+    private int[] operandList;          //모든 토큰의 operand name 번호를 이어서 저장
+    private int[] locationList;
+    private int[] byteSizeList;
+    private int[] codeOffsetList;       //T 레코드의 codeBuffer 시작 위치. 없으면 -1
+    private byte[] nixbpeList;
+    private byte[] recordList;          //레코드 정보(H, D, R, T, M, E). 없으면 0
+    private final HashMap<Integer, String> objectCodeMap = new HashMap<>();    //H, D, R, M, E 레코드의 내용
+
+    /*
+     * section에서 사용된 문자열(label, operator, operand)을 중복 없이 저장하는 공간.
+     * 검색은 LiteralTable과 같은 open addressing 해시 테이블로 하여 문자열마다 객체를 더 만들지 않는다.
+     * nameInstList에는 같은 번호의 문자열을 operator로 썼을 때의 Instruction을 미리 찾아둔다. (명령어가 아니면 null)
+     * nameFlagList에는 addressing mode와 검색 상태를, nameRefList에는 operand로 썼을 때 가리키는
+     * symbol 또는 literal의 번호(immediate이면 값)를 저장하여 pass2에서는 배열만 읽는다.
+     */
+    private final ArrayList<String> nameList = new ArrayList<>();
+    private int[] nameHash = new int[64];       //nameList의 index + 1을 저장. 0이면 빈 칸
+    private Instruction[] nameInstList = new Instruction[64];
+    private byte[] nameFlagList = new byte[64];
+    private int[] nameRefList = new int[64];
+    private byte[] nameRegisterList = new byte[64];    //레지스터 이름이면 번호, 아니면 -1
+
+    /* pass 순회 중 load()에 사용하는 Token과 operand 배열 (section마다 한 스레드에서만 순회한다) */
+    private final Token cursor = new Token();
+    private final String[][] operandBuffer = new String[MAX_OPERAND + 1][];
+
+    /**
+     * pass2에서 만든 T 레코드의 object code를 byte 단위로 이어서 저장하는 공간.
+     * 각 Token은 codeOffset으로 시작 위치를 가리키고, 길이는 Token의 byteSize와 같다.
+     */
+    byte[] codeBuffer;
+    int codeLength;
+
+    /**
+     * pass2 도중 만들어진 M 레코드를 모아두는 공간. 순회 중인 토큰들을 건드리지 않도록
+     * section의 마지막 토큰을 처리할 때 E 레코드와 함께 tokenList 뒤에 붙인다.
+     */
+    ArrayList<Token> modificationList;
+
+    /**
+     * pass1에서 값을 정하지 않은 EQU들. section의 주소 할당이 끝나면 Assembler.resolveEquates()에서 값을 정하고 비운다.
+     */
+    ArrayList<Equate> equateList;
 
     /**
      * 초기화하면서 symTable과 instTable을 링크시킨다.
@@ -35,7 +108,7 @@ public class TokenTable {
     public TokenTable(SymbolTable symTab, InstTable instTab) {
         this.symTab = symTab;
         this.instTab = instTab;
-        tokenList = new ArrayList<>();
+        init();
     }
 
     /**
@@ -46,7 +119,25 @@ public class TokenTable {
     public TokenTable(LiteralTable literalTab, InstTable instTab) {
         this.literalTab = literalTab;
         this.instTab = instTab;
-        tokenList = new ArrayList<>();
+        init();
+    }
+
+    private void init() {
+        tokenList = new TokenView();
+        codeBuffer = new byte[256];
+        modificationList = new ArrayList<>();
+        equateList = new ArrayList<>();
+        labelList = new int[16];
+        operatorList = new int[16];
+        operandBegin = new int[17];
+        operandList = new int[16];
+        locationList = new int[16];
+        byteSizeList = new int[16];
+        codeOffsetList = new int[16];
+        nixbpeList = new byte[16];
+        recordList = new byte[16];
+        for(int i = 0; i <= MAX_OPERAND; i++)
+            operandBuffer[i] = new String[i];
     }
 
     /**
@@ -54,16 +145,358 @@ public class TokenTable {
      * @param line : 분리되지 않은 일반 문자열
      */
     public void putToken(String line) {
-        tokenList.add(new Token(line));
+        putToken(new Token(line));
+    }
+
+    /**
+     * 이미 분리된 Token을 column들에 나누어 저장한다. 저장한 뒤의 Token 객체는 더 이상 사용하지 않는다.
+     * @param token : 분리가 끝난 Token
+     */
+    public void putToken(Token token) {
+        if(count == labelList.length)
+            grow();
+        int index = count++;
+        labelList[index] = intern(token.label);
+        operatorList[index] = intern(token.operator);
+        int begin = operandBegin[index];
+        if(begin + token.operand.length > operandList.length)
+            operandList = Arrays.copyOf(operandList, Math.max(operandList.length * 2, begin + token.operand.length));
+        for(String operand : token.operand)
+            operandList[begin++] = intern(operand);
+        operandBegin[index + 1] = begin;
+        store(index, token);
+    }
+
+    /**
+     * SourceReader가 읽고 있는 줄을 문자열로 바꾸지 않고 column들에 바로 저장한다. 주석은 버린다.
+     * 필드와 operand를 나누는 규칙은 Token.parsing()과 같으며, 처음 나온 이름만 String으로 만든다.
+     * @param source : nextLine()으로 필드가 나뉜 reader
+     */
+    public void putToken(SourceReader source) {
+        if(count == labelList.length)
+            grow();
+        int index = count++;
+        labelList[index] = intern(source, source.lineBegin, source.labelEnd);
+        operatorList[index] = source.fields >= 2 ? intern(source, source.operatorBegin, source.operatorEnd) : intern("");
+        int begin = operandBegin[index];
+        if(source.fields >= 3) {
+            //split(",")과 같이 끝에 있는 빈 operand는 버린다. 단, 쉼표가 없으면 그대로 하나이다
+            int from = source.operandBegin;
+            int last = source.operandEnd;
+            boolean comma = false;
+            for(int i = from; i < last && !comma; i++)
+                comma = source.get(i) == ',';
+            if(comma) {
+                while(last > from && source.get(last - 1) == ',')
+                    last--;
+            }
+            while(comma ? from < last : from <= last) {
+                int to = from;
+                while(to < last && source.get(to) != ',')
+                    to++;
+                if(begin == operandList.length)
+                    operandList = Arrays.copyOf(operandList, begin * 2);
+                operandList[begin++] = intern(source, from, to);
+                from = to + 1;
+            }
+        }
+        operandBegin[index + 1] = begin;
+        locationList[index] = 0;
+        byteSizeList[index] = 0;
+        codeOffsetList[index] = -1;
+        nixbpeList[index] = 0;
+        recordList[index] = 0;
     }
 
     /**
      * tokenList에서 index에 해당하는 Token을 리턴한다.
+     * column을 읽어 새로 만든 view이므로 고쳐도 table에는 반영되지 않는다.
      * @param index : 리턴할 tokenList의 index
      * @return : index번호에 해당하는 코드를 분석한 Token 클래스
      */
     public Token getToken(int index) {
-        return tokenList.get(index);
+        Token token = new Token();
+        load(index, token, false);
+        return token;
+    }
+
+    /**
+     * index번째 토큰을 pass 순회용 Token에 읽어온다. 다음 load() 호출 때 덮어쓰이므로 보관하지 않는다.
+     * @return : 읽어온 Token
+     */
+    Token load(int index) {
+        load(index, cursor, true);
+        return cursor;
+    }
+
+    private void load(int index, Token token, boolean reuse) {
+        token.label = nameList.get(labelList[index]);
+        token.operator = nameList.get(operatorList[index]);
+        int begin = operandBegin[index];
+        int size = operandBegin[index + 1] - begin;
+        String[] operand = reuse && size <= MAX_OPERAND ? operandBuffer[size] : new String[size];
+        for(int i = 0; i < size; i++)
+            operand[i] = nameList.get(operandList[begin + i]);
+        token.operand = operand;
+        token.location = locationList[index];
+        token.byteSize = byteSizeList[index];
+        token.codeOffset = codeOffsetList[index];
+        token.nixbpe = (char) nixbpeList[index];
+        token.record = (char) recordList[index];
+        //내용이 있는 것은 H, D, R, M, E 레코드뿐이므로 나머지는 map을 찾지 않는다
+        token.objectCode = token.record == 0 || token.record == 'T' ? "" : objectCodeMap.getOrDefault(index, "");
+    }
+
+    /**
+     * Token에서 pass 도중 바뀌는 값들(주소, 크기, nixbpe, 레코드, object code)을 index번째 토큰에 저장한다.
+     */
+    void store(int index, Token token) {
+        locationList[index] = token.location;
+        byteSizeList[index] = token.byteSize;
+        codeOffsetList[index] = token.codeOffset;
+        nixbpeList[index] = (byte) token.nixbpe;
+        recordList[index] = (byte) token.record;
+        if(!token.objectCode.isEmpty())
+            objectCodeMap.put(index, token.objectCode);
+    }
+
+    /** 토큰 수 */
+    public int size() {
+        return count;
+    }
+
+    public int getLocation(int index) {
+        return locationList[index];
+    }
+
+    public void setLocation(int index, int location) {
+        locationList[index] = location;
+    }
+
+    public int getByteSize(int index) {
+        return byteSizeList[index];
+    }
+
+    public int getCodeOffset(int index) {
+        return codeOffsetList[index];
+    }
+
+    public char getRecord(int index) {
+        return (char) recordList[index];
+    }
+
+    public String getLabel(int index) {
+        return nameList.get(labelList[index]);
+    }
+
+    public String getOperator(int index) {
+        return nameList.get(operatorList[index]);
+    }
+
+    /**
+     * index번째 토큰의 operator에 해당하는 Instruction. 문자열을 저장할 때 찾아두었으므로 배열만 읽는다.
+     * @return : 명령어가 아니면 null
+     */
+    public Instruction getInstruction(int index) {
+        return nameInstList[operatorList[index]];
+    }
+
+    /**
+     * source의 buffer[begin, end)를 문자열로 만들지 않고 nameList에서 찾는다. 없으면 그때만 String으로 만들어 저장한다.
+     * hash는 String.hashCode()와 같은 값이므로 intern(String)과 같은 칸을 사용한다.
+     * ASCII가 아닌 byte가 있으면 UTF-8로 읽어 intern(String)에 맡긴다.
+     */
+    private int intern(SourceReader source, int begin, int end) {
+        int length = end - begin;
+        int h = 0;
+        for(int i = begin; i < end; i++) {
+            byte b = source.get(i);
+            if(b < 0)
+                return intern(decode(source, begin, end, StandardCharsets.UTF_8));
+            h = 31 * h + b;
+        }
+        int mask = nameHash.length - 1;
+        int pos = hash(h) & mask;
+        int entry;
+        while((entry = nameHash[pos]) != 0) {
+            String name = nameList.get(entry - 1);
+            if(name.length() == length && source.matches(begin, end, name))
+                return entry - 1;
+            pos = (pos + 1) & mask;
+        }
+        return add(decode(source, begin, end, StandardCharsets.ISO_8859_1), pos);
+    }
+
+    private static String decode(SourceReader source, int begin, int end, Charset charset) {
+        byte[] bytes = new byte[end - begin];
+        source.get(begin, end, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * 문자열을 nameList에 중복 없이 저장하고 번호를 리턴한다.
+     */
+    private int intern(String name) {
+        int mask = nameHash.length - 1;
+        int pos = hash(name) & mask;
+        int entry;
+        while((entry = nameHash[pos]) != 0) {
+            if(nameList.get(entry - 1).equals(name))
+                return entry - 1;
+            pos = (pos + 1) & mask;
+        }
+        return add(name, pos);
+    }
+
+    /**
+     * nameList에 없는 문자열을 저장하고 번호를 리턴한다.
+     * @param pos : 검색이 끝난 nameHash의 빈 칸
+     */
+    private int add(String name, int pos) {
+        int id = nameList.size();
+        nameList.add(name);
+        if(id == nameInstList.length) {
+            nameInstList = Arrays.copyOf(nameInstList, id * 2);
+            nameFlagList = Arrays.copyOf(nameFlagList, id * 2);
+            nameRefList = Arrays.copyOf(nameRefList, id * 2);
+            nameRegisterList = Arrays.copyOf(nameRegisterList, id * 2);
+        }
+        nameInstList[id] = instTab != null ? instTab.search(name) : null;
+        nameFlagList[id] = (byte) addressingMode(name);
+        nameRegisterList[id] = (byte) InstructionEncoder.register(name);
+        //load factor를 1/2 이하로 유지
+        if((id + 1) * 2 > nameHash.length) {
+            nameHash = new int[nameHash.length * 2];
+            for(int i = 0; i <= id; i++)
+                placeName(i);
+        }
+        else
+            nameHash[pos] = id + 1;
+        return id;
+    }
+
+    /**
+     * name이 가리키는 symbol 또는 literal을 찾아 nameRefList에 기록한다. name마다 한 번만 문자열로 검색한다.
+     * symbol과 literal의 주소가 모두 정해진 pass2에서만 호출한다.
+     * @param id : name 번호
+     * @return : symbol 또는 literal의 번호. immediate operand이면 그 값. 어디에도 없으면 -1
+     */
+    private int resolve(int id) {
+        int flags = nameFlagList[id];
+        if((flags & REF_RESOLVED) == 0) {
+            String name = nameList.get(id);
+            int ref;
+            if((flags & MODE_IMMEDIATE) != 0)
+                ref = Integer.parseInt(name, 1, name.length(), 10);
+            else if((ref = this.symTab.indexOf((flags & MODE_INDIRECT) != 0 ? name.substring(1) : name)) != -1)
+                flags |= REF_SYMBOL;
+            else if((flags & MODE_LITERAL) != 0 && (ref = this.literalTab.indexOfOperand(name)) != -1)
+                flags |= REF_LITERAL;
+            nameRefList[id] = ref;
+            nameFlagList[id] = (byte) (flags | REF_RESOLVED);
+        }
+        return nameRefList[id];
+    }
+
+    /**
+     * name이 가리키는 주소를 symtab, littab 순서로 찾는다. (findTarget()과 같은 순서)
+     * @param id : name 번호. -1이면 operand가 없는 것
+     * @return : 주소. 어디에도 없으면 -1
+     */
+    private int targetOf(int id) {
+        if(id < 0)
+            return -1;
+        int ref = resolve(id);
+        if((nameFlagList[id] & REF_SYMBOL) != 0)
+            return this.symTab.getLocation(ref);
+        if((nameFlagList[id] & REF_LITERAL) != 0)
+            return this.literalTab.getLocation(ref);
+        return -1;
+    }
+
+    /**
+     * index번째 토큰의 k번째 operand의 name 번호
+     * @return : operand가 k개 이하이면 -1
+     */
+    private int operandId(int index, int k) {
+        int position = operandBegin[index] + k;
+        return position < operandBegin[index + 1] ? operandList[position] : -1;
+    }
+
+    /**
+     * nameHash의 빈 칸에 index를 배치한다. (linear probing)
+     */
+    private void placeName(int index) {
+        int mask = nameHash.length - 1;
+        int pos = hash(nameList.get(index)) & mask;
+        while(nameHash[pos] != 0)
+            pos = (pos + 1) & mask;
+        nameHash[pos] = index + 1;
+    }
+
+    /**
+     * 연속된 label(L1, L2, ...)의 hashCode는 값도 연속되어 linear probing에서 한 곳에 뭉치므로 곱셈으로 흩어준다.
+     */
+    private static int hash(String name) {
+        return hash(name.hashCode());
+    }
+
+    private static int hash(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * column 배열들을 두 배로 늘린다.
+     */
+    private void grow() {
+        int size = labelList.length * 2;
+        labelList = Arrays.copyOf(labelList, size);
+        operatorList = Arrays.copyOf(operatorList, size);
+        operandBegin = Arrays.copyOf(operandBegin, size + 1);
+        locationList = Arrays.copyOf(locationList, size);
+        byteSizeList = Arrays.copyOf(byteSizeList, size);
+        codeOffsetList = Arrays.copyOf(codeOffsetList, size);
+        nixbpeList = Arrays.copyOf(nixbpeList, size);
+        recordList = Arrays.copyOf(recordList, size);
+    }
+
+    /**
+     * column들을 Token 목록처럼 보여주는 view
+     */
+    private class TokenView extends AbstractList<Token> {
+        @Override
+        public Token get(int index) {
+            if(index < 0 || index >= count)
+                throw new IndexOutOfBoundsException(index);
+            return getToken(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public void add(int index, Token token) {
+            if(index != count)
+                throw new UnsupportedOperationException();
+            putToken(token);
+        }
+    }
+
+    /**
+     * Pass2 과정에서 사용한다.
+     * section의 모든 토큰에 대해 object code를 생성한다. 끝나면 tokenList 뒤에 M, E 레코드가 붙는다.
+     * 다른 section의 데이터는 건드리지 않으므로 section마다 다른 스레드에서 호출해도 된다.
+     */
+    public void makeObjectCode() {
+        int size = count;
+        //대부분의 토큰은 3byte 명령어이므로 그만큼 미리 확보하고, 넘으면 putCode에서 늘린다.
+        //section의 길이(첫 토큰의 주소에 저장)는 RESB, RESW의 빈 공간까지 포함하므로 더 크게 잡지 않는다
+        ensureCode(Math.min(locationList[0], size * 3));
+        for(int i=0; i<size; i++)
+            makeObjectCode(i);
     }
 
     /**
@@ -72,18 +505,23 @@ public class TokenTable {
      * @param index objectCode를 생성할 tokenList의 index
      */
     public void makeObjectCode(int index){
-        Token token = this.getToken(index);
-        Instruction inst = this.instTab.instMap.get(token.operator.replace("+", ""));
+        Token token = load(index);
+        Instruction inst = getInstruction(index);
+        //일반 명령어 (가장 많으므로 먼저 확인한다)
+        if(inst != null) {
+            token.record = 'T';
+            putCode(token, encodeInstruction(index, token, inst));
+        }
         //START나 CSECT
-        if(token.operator.equals("START") || token.operator.equals("CSECT")) {
+        else if(token.operator.equals("START") || token.operator.equals("CSECT")) {
             token.record = 'H';
             token.objectCode = String.format("%-6s%06X%06X", token.label, 0, token.location);
         }
         //EXTDEF
         else if(token.operator.equals("EXTDEF")) {
             token.record = 'D';
-            for(String extdef : token.operand)
-                token.objectCode = token.objectCode.concat(String.format("%-6s%06X", extdef, this.symTab.search(extdef)));
+            for(int i=0; i<token.operand.length; i++)
+                token.objectCode = token.objectCode.concat(String.format("%-6s%06X", token.operand[i], targetOf(operandId(index, i)) & 0xFFFFFF));
         }
         //EXTREF
         else if(token.operator.equals("EXTREF")) {
@@ -91,220 +529,249 @@ public class TokenTable {
             for(String extref : token.operand)
                 token.objectCode = token.objectCode.concat(String.format("%-6s", extref));
         }
-        //일반 명령어
-        else if(inst != null) {
-            token.record = 'T';
-            //nixbpe비트를 채우고 displacement 구하기
-            int displacement = setNixbpe(token, inst);
-            //format에 따라 objectCode 저장
-            switch(token.byteSize) {
-                case 2:
-                    token.objectCode = String.format("%04X", ((inst.opcode<<4 | token.nixbpe) << 4) | displacement);
-                    break;
-                case 3:
-                    token.objectCode = String.format("%06X", ((inst.opcode<<4 | token.nixbpe) << 12) | (displacement & 0xFFF));
-                    break;
-                case 4:
-                    token.objectCode = String.format("%08X", ((inst.opcode<<4 | token.nixbpe) << 20) | (displacement & 0xFFFFF));
-                    break;
-            }
-        }
         //LTORG나 END
         else if(token.operator.equals("LTORG") || token.operator.equals("END")) {
             token.record = 'T';
             LiteralTable littab = this.literalTab;
-            for(int i=0; i<littab.literalList.size(); i++) {
+            int end = token.location + token.byteSize;
+            token.codeOffset = codeLength;
+            //이 토큰의 주소부터 할당된 literal pool만 출력
+            for(int i=littab.poolIndex(token.location); i<littab.size() && littab.getLocation(i) < end; i++) {
                 String literal = littab.literalList.get(i);
-                int value = 0;
-                switch(littab.typeList.get(i)) {
-                    case 'X':
-                        value = Integer.parseInt(literal, 16);
-                        break;
-                    case 'C':
-                        for(int j=0; j<literal.length(); j++) {
-                            value = value << 8;
-                            value |= literal.charAt(j);
-                        }
-                        break;
-                }
-                token.objectCode = token.objectCode.concat(String.format("%0"+token.byteSize*2+"X", value));
+                appendData(literal, 0, literal.length(), littab.getType(i) == LiteralTable.TYPE_X);
             }
         }
         //BYTE
         else if(token.operator.equals("BYTE")) {
             token.record = 'T';
-            String value = token.operand[0].replace("'", "");
-            int intValue = 0;
-            //X이면
-            if(value.startsWith("X"))
-                intValue = Integer.parseInt(value.replace("X", ""), 16);
-            //C이면
-            else {
-                value = value.replace("C", "");
-                for(int i=0; i<value.length(); i++) {
-                    intValue = intValue << 8;
-                    intValue |= value.charAt(i);
-                }
-            }
-            token.objectCode = String.format("%0"+token.byteSize*2+"X", intValue);
+            String value = token.operand[0];
+            token.codeOffset = codeLength;
+            //X'..' 또는 C'..'의 따옴표 안쪽
+            appendData(value, 2, value.length() - 1, value.startsWith("X"));
         }
         //WORD
         else if(token.operator.equals("WORD")) {
             token.record = 'T';
-            int value;
-            //다항 연산이면(-)
-            if(token.operand[0].contains("-")) {
-                String[] operand = token.operand[0].split("-");
-                int addr1 = this.symTab.search(operand[0]);
-                int addr2 = this.symTab.search(operand[1]);
-                if(addr1 != -1 && addr2 != -1)
-                    value = addr2 - addr1;
-                //외부 참조이면 M레코드 추가
-                else {
-                    Token mToken = new Token('M', String.format("%06X06+%s", token.location, operand[0]));
-                    this.tokenList.add(mToken);
-                    mToken = new Token('M', String.format("%06X06-%s", token.location, operand[1]));
-                    this.tokenList.add(mToken);
-                    value = 0;
-                }
-            }
-            //단항이면
-            else {
-                int addr = symTab.search(token.operand[0]);
-                //외부 참조이면 M레코드 추가
-                if(addr == -1) {
-                    value = 0;
-                    Token mToken = new Token('M', String.format("%06X06+%s", token.location, token.operand[0]));
-                    this.tokenList.add(mToken);
-                }
-                else
-                    value = addr;
-            }
-            token.objectCode = String.format("%0"+token.byteSize*2+"X", value);
+            Expression expression = Expression.compile(token.operand[0]);
+            putCode(token, expression.evaluate(this.symTab, token.location));
+            //외부 참조나 상대 주소이면 M레코드 추가
+            for(String modification : modificationsOf(expression, this.symTab, token.location, getLabel(0)))
+                this.modificationList.add(new Token('M', modification));
         }
-        //section의 마지막이면 E record 추가
-        if(token.record != 'E' && index == this.tokenList.size() - 1) {
-            if(this.getToken((0)).operator.equals("START")) {
+        store(index, token);
+        //section의 마지막이면 모아둔 M record와 E record 추가
+        if(token.record != 'E' && index == count - 1) {
+            for(Token mToken : this.modificationList)
+                putToken(mToken);
+            this.modificationList.clear();
+            if(getOperator(0).equals("START")) {
                 Token eToken = new Token('E', String.format("%06X", 0));
-                this.tokenList.add(eToken);
+                putToken(eToken);
             }
             else {
                 Token eToken = new Token('E', "");
-                this.tokenList.add(eToken);
+                putToken(eToken);
             }
         }
     }
 
     /**
-     * 주어진 토큰 라인이 명령어인 경우 nixbpe를 설정하고 displacement를 리턴한다
-     * @param token : nixbpe를 설정할 토큰
-     * @return : displacement
-     */
-    private int setNixbpe(Token token, Instruction inst) {
-        int displacement = 0;
-        //ni비트
-        //2byte format이면(레지스터 연산)
-        if(inst.format == 2) {
-            //n = 0, i = 0
-            token.setFlag(nFlag, 0);
-            token.setFlag(iFlag, 0);
-        }
-        //3~4byte format이면
-        else {
-            //n = 1, i = 1으로 초기화
-            token.setFlag(nFlag, 1);
-            token.setFlag(iFlag, 1);
-            if(inst.operandNum > 0) {
-                //immediate addressing이면 n = 0
-                if(token.operand[0].startsWith("#"))
-                    token.setFlag(nFlag, 0);
-                    //indirect addressing이면 i = 0
-                else if(token.operand[0].startsWith("@"))
-                    token.setFlag(iFlag, 0);
-            }
+     * WORD 식의 값을 loader가 고쳐야 하는 M 레코드들의 내용을 만든다.
+     * section에 없는 symbol(외부 참조)마다 식에서의 부호로 하나씩, 결과가 상대 주소이면 section 이름으로 하나를 만든다.
+     * @param expression : WORD의 식
+     * @param symtab : section의 symbol table
+     * @param location : WORD의 주소
+     * @param sectionName : section 이름
+     * @return : M 레코드의 내용 (주소, 길이, 부호, symbol)
+     * @throws IllegalArgumentException : 외부 symbol을 곱하거나 나누는 경우
+     */
+    static ArrayList<String> modificationsOf(Expression expression, SymbolTable symtab, int location, String sectionName) {
+        ArrayList<String> modificationList = new ArrayList<>();
+        for(int i = 0; i < expression.nameList.length; i++) {
+            if(symtab.indexOf(expression.nameList[i]) != -1)
+                continue;
+            int sign = expression.signOf(i);
+            if(sign == 0)
+                throw new IllegalArgumentException("external symbol in product : " + expression.nameList[i]);
+            for(int k = 0; k < Math.abs(sign); k++)
+                modificationList.add(String.format("%06X06%c%s", location, sign > 0 ? '+' : '-', expression.nameList[i]));
         }
-        //x비트
-        if(token.operand.length > 1 && token.operand[1].equals("X"))
-            token.setFlag(xFlag, 1);
-        else
-            token.setFlag(xFlag, 0);
-        //bp비트
-        //2byte format이면(레지스터 연산)
+        int relocation = expression.relocation(symtab);
+        for(int k = 0; k < Math.abs(relocation); k++)
+            modificationList.add(String.format("%06X06%c%s", location, relocation > 0 ? '+' : '-', sectionName));
+        return modificationList;
+    }
+
+    /**
+     * 명령어 토큰의 object code를 만들고 nixbpe를 설정한다. (InstructionEncoder 참고)
+     * operand는 저장할 때 해석해둔 addressing mode, 레지스터 번호와 검색 결과로 처리하므로 문자열을 다루지 않는다.
+     * 참조 대상이 symtab, littab 어디에도 없으면 M레코드를 추가한다.
+     * @param index : 토큰의 index
+     * @param token : nixbpe를 설정할 토큰
+     * @return : token.byteSize byte의 object code
+     */
+    private int encodeInstruction(int index, Token token, Instruction inst) {
+        int first = operandId(index, 0);
+        int second = operandId(index, 1);
+        int code;
         if(token.byteSize == 2) {
-            token.setFlag(bFlag, 0);
-            token.setFlag(pFlag, 0);
-            ArrayList<String> rList = new ArrayList<>(Arrays.asList("A", "X", "L", "B", "S", "T", "F", "", "PC", "SW"));
-            switch(token.operand.length) {
-                case 2:
-                    displacement = rList.indexOf(token.operand[1]);
-                case 1:
-                    displacement |= rList.indexOf(token.operand[0]) << 4;
-                    break;
-            }
+            int count = operandBegin[index + 1] - operandBegin[index];
+            code = InstructionEncoder.encode(inst, 2, 0, token.location,
+                    InstructionEncoder.registerPair(count > 0 ? nameRegisterList[first] : 0, count > 1 ? nameRegisterList[second] : 0, count));
         }
         else {
-            //immediate addressing 이면 b = 0, p = 0
-            if(token.getFlag(nFlag | iFlag) == iFlag) {
-                token.setFlag(bFlag, 0);
-                token.setFlag(pFlag, 0);
-                displacement = Integer.parseInt(token.operand[0].replace("#", ""));
-            }
-            //일반적인 3-4byte format
+            int mode = (first < 0 ? 0 : nameFlagList[first] & (MODE_IMMEDIATE | MODE_INDIRECT))
+                    | (second < 0 ? 0 : nameFlagList[second] & MODE_INDEX);
+            int value;
+            if(!usesTarget(inst, mode))
+                value = isImmediate(inst, mode) ? resolve(first) : -1;
             else {
-                token.setFlag(bFlag, 0);
-                token.setFlag(pFlag, 1);
-                //symtab, littab에서 검색
-                int target = this.symTab.search(token.operand[0].replace("@", ""));
-                //symtab에 있으면 displacement를 계산하여 b,p비트 입력
-                if(target != -1) {
-                    if (Math.abs(target - (token.location + token.byteSize)) <= 0x7FF)
-                        displacement = target - (token.location + token.byteSize);
-                    else {
-                        token.setFlag(bFlag, 1);
-                        token.setFlag(pFlag, 0);
-                    }
-                }
-                //littab에 있으면 displacement를 계산하여 b,p비트 입력
-                else {
-                    String literal = token.operand[0];
-                    literal = literal.replace("=C'", "");
-                    literal = literal.replace("=X'", "");
-                    literal = literal.replace("'", "");
-                    target = this.literalTab.search(literal);
-                    if(target != -1) {
-                        if (Math.abs(target - (token.location + token.byteSize)) <= 0x7FF)
-                            displacement = target - (token.location + token.byteSize);
-                        else {
-                            token.setFlag(bFlag, 1);
-                            token.setFlag(pFlag, 0);
-                        }
-                    }
-                    else {
-                        token.setFlag(pFlag, 0);
-                        if(literal.length() > 0) {
-                            Token mToken = new Token('M', String.format("%06X05+%s", token.location + 1, literal));
-                            this.tokenList.add(mToken);
-                        }
-                    }
+                value = targetOf(first);
+                //외부 참조이면 M레코드 추가 (값이 -1인 EQU와 구분하기 위해 검색 결과로 판단한다)
+                if(first >= 0 && (nameFlagList[first] & (REF_SYMBOL | REF_LITERAL)) == 0 && token.operand[0].length() > 0) {
+                    Token mToken = new Token('M', ObjectProgramWriter.toHex(token.location + 1, 6).concat("05+").concat(token.operand[0]));
+                    this.modificationList.add(mToken);
                 }
             }
+            code = InstructionEncoder.encode(inst, token.byteSize, mode, token.location, value);
         }
-        //e비트
-        if(token.byteSize == 4)
-            token.setFlag(eFlag, 1);
-        else
-            token.setFlag(eFlag, 0);
+        token.nixbpe = InstructionEncoder.nixbpeOf(code, token.byteSize);
+        return code;
+    }
+
+    /**
+     * 명령어가 주소를 참조하는지 (3-4byte format이고 immediate addressing이 아닌지) 알려준다.
+     * 참조하는 경우에만 findTarget()의 결과가 object code에 영향을 준다.
+     */
+    static boolean usesTarget(Token token, Instruction inst) {
+        return usesTarget(inst, addressingMode(token));
+    }
+
+    static boolean usesTarget(Instruction inst, int mode) {
+        return inst.format >= 3 && !isImmediate(inst, mode);
+    }
+
+    /**
+     * 3-4byte format에서 immediate addressing인지 (displacement가 operand의 값인지) 알려준다.
+     */
+    static boolean isImmediate(Instruction inst, int mode) {
+        return inst.format >= 3 && inst.operandNum > 0 && (mode & MODE_IMMEDIATE) != 0;
+    }
+
+    /**
+     * operand의 앞 글자로 addressing mode를 구한다. 문자열을 새로 만들지 않는다.
+     * @return : MODE_IMMEDIATE, MODE_INDIRECT, MODE_LITERAL 중 하나. X 레지스터이면 MODE_INDEX. 그 외에는 0
+     */
+    static int addressingMode(String operand) {
+        if(operand.isEmpty())
+            return 0;
+        switch(operand.charAt(0)) {
+            case '#':
+                return MODE_IMMEDIATE;
+            case '@':
+                return MODE_INDIRECT;
+            case '=':
+                return MODE_LITERAL;
+            case 'X':
+                return operand.length() == 1 ? MODE_INDEX : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 명령어 토큰의 addressing mode. 첫번째 operand의 #, @와 두번째 operand의 X를 합친다.
+     */
+    static int addressingMode(Token token) {
+        int mode = token.operand.length > 0 ? addressingMode(token.operand[0]) & (MODE_IMMEDIATE | MODE_INDIRECT) : 0;
+        if(token.operand.length > 1)
+            mode |= addressingMode(token.operand[1]) & MODE_INDEX;
+        return mode;
+    }
+
+    /**
+     * 명령어가 참조하는 주소를 symtab, littab 순서로 검색한다.
+     * @param token : usesTarget()이 true인 명령어 토큰
+     * @return : 참조하는 주소. 어디에도 없으면 (외부 참조이거나 아직 정의되지 않았으면) -1. operand가 없으면 -1
+     */
+    int findTarget(Token token) {
+        if(token.operand.length == 0)
+            return -1;
+        int target = this.symTab.search(token.operand[0].replace("@", ""));
+        if(target == -1)
+            target = this.literalTab.searchOperand(token.operand[0]);
+        return target;
+    }
 
-        return displacement;
+    /**
+     * 참조 주소가 주어졌을 때 명령어 토큰의 object code를 만들고 nixbpe를 설정한다.
+     * immediate operand의 값과 레지스터는 토큰의 문자열에서 읽는다. (one-pass 어셈블에서 사용)
+     * @param token : 명령어 토큰
+     * @param target : findTarget()으로 찾은 참조 주소. 없으면 -1
+     * @return : token.byteSize byte의 object code
+     */
+    static int encode(Token token, Instruction inst, int target) {
+        int mode = addressingMode(token);
+        int value = target;
+        if(token.byteSize == 2) {
+            int count = token.operand.length;
+            value = InstructionEncoder.registerPair(count > 0 ? InstructionEncoder.register(token.operand[0]) : 0,
+                    count > 1 ? InstructionEncoder.register(token.operand[1]) : 0, count);
+        }
+        else if(isImmediate(inst, mode))
+            value = Integer.parseInt(token.operand[0], 1, token.operand[0].length(), 10);
+        int code = InstructionEncoder.encode(inst, token.byteSize, mode, token.location, value);
+        token.nixbpe = InstructionEncoder.nixbpeOf(code, token.byteSize);
+        return code;
     }
 
     /**
      * index번호에 해당하는 object code를 리턴한다.
+     * T 레코드의 경우 codeBuffer에 저장된 byte를 이 때 16진수 문자열로 바꾼다.
      * @param index : 원하는 object code의 index
      * @return : object code
      */
     public String getObjectCode(int index) {
-        return getToken(index).objectCode;
+        if(codeOffsetList[index] >= 0)
+            return ObjectProgramWriter.toHex(codeBuffer, codeOffsetList[index], byteSizeList[index]);
+        return objectCodeMap.getOrDefault(index, "");
+    }
+
+    /**
+     * value의 하위 token.byteSize byte를 big endian으로 codeBuffer에 저장한다.
+     * @param token : object code를 저장할 토큰
+     * @param value : 저장할 값
+     */
+    private void putCode(Token token, int value) {
+        token.codeOffset = codeLength;
+        ensureCode(token.byteSize);
+        for(int shift = (token.byteSize - 1) * 8; shift >= 0; shift -= 8)
+            codeBuffer[codeLength++] = (byte) (value >>> shift);
+    }
+
+    /**
+     * data[begin, end) 범위의 상수를 byte로 바꿔 codeBuffer 뒤에 붙인다.
+     * @param hex : true이면 16진수 두 자리가 1 byte(X'..'), false이면 문자 하나가 1 byte(C'..')
+     */
+    private void appendData(String data, int begin, int end, boolean hex) {
+        if(hex) {
+            ensureCode((end - begin) / 2);
+            for(int i = begin; i + 1 < end; i += 2)
+                codeBuffer[codeLength++] = (byte) (Character.digit(data.charAt(i), 16) << 4 | Character.digit(data.charAt(i + 1), 16));
+        }
+        else {
+            ensureCode(end - begin);
+            for(int i = begin; i < end; i++)
+                codeBuffer[codeLength++] = (byte) data.charAt(i);
+        }
+    }
+
+    /**
+     * codeBuffer에 size byte를 더 저장할 수 있도록 공간을 확보한다.
+     */
+    private void ensureCode(int size) {
+        if(codeLength + size > codeBuffer.length)
+            codeBuffer = Arrays.copyOf(codeBuffer, Math.max(codeBuffer.length * 2, codeLength + size));
     }
 
 }
@@ -319,11 +786,15 @@ class Token {
     String label;
     String operator;
     String[] operand;
-    String comment;
+    String comment;     //필요할 때 getComment()로 만든다
     char nixbpe;
 
+    private String line;        //분석한 원본 문장. 주석은 이 문장의 위치로만 기억한다
+    private int commentBegin;   //원본 문장에서 주석이 시작되는 위치. 주석이 없으면 -1
+
     // object code 생성 단계에서 사용되는 변수들
-    String objectCode;
+    String objectCode;  //H, D, R, M, E 레코드의 내용
+    int codeOffset;     //T 레코드인 경우 TokenTable.codeBuffer에서 object code의 시작 위치. 없으면 -1
     int byteSize;   //생성되는 object code의 byte 크기
     char record;    //토큰의 레코드 정보(H, D, R, T, M, E)
 
@@ -336,12 +807,26 @@ class Token {
         //초기화
         label = "";
         operator = "";
-        operand = new String[0];
-        comment = "";
+        operand = EMPTY;
         objectCode = "";
+        codeOffset = -1;
+        commentBegin = -1;
         parsing(line);
     }
 
+    /**
+     * 빈 토큰. TokenTable의 column을 읽어올 때 사용한다.
+     */
+    Token() {
+        label = "";
+        operator = "";
+        operand = EMPTY;
+        objectCode = "";
+        codeOffset = -1;
+        commentBegin = -1;
+        comment = "";
+    }
+
     /**
      * M, E레코드를 추가하는 경우의 생성자
      *
@@ -351,6 +836,7 @@ class Token {
     public Token(char record, String objectCode) {
         this.record = record;
         this.objectCode = objectCode;
+        this.codeOffset = -1;
         label = "";
         operator = "";
         operand = new String[0];
@@ -359,24 +845,105 @@ class Token {
 
     /**
      * line의 실질적인 분석을 수행하는 함수. Token의 각 변수에 분석한 결과를 저장한다.
+     * 탭과 쉼표의 위치를 한 번만 훑어서 분리하며, 주석은 위치만 기억하고 문자열로 만들지 않는다.
+     * 분리 결과는 line.split("\t")과 operand.split(",")을 사용하던 기존 방식과 같다.
      *
      * @param line 문장단위로 저장된 프로그램 코드.
      */
     public void parsing(String line) {
-        //분리
-        String[] info = line.split("\t");
-        //입력
-        switch (info.length) {
-            case 4:
-                comment = info[3];
-            case 3:
-                operand = info[2].split(",");
-            case 2:
-                operator = info[1];
-            case 1:
-                label = info[0];
-                break;
+        this.line = line;
+        int length = line.length();
+        //필드 경계 찾기 (label, operator, operand, comment 순서)
+        int labelEnd = nextTab(line, 0, length);
+        int operatorEnd = labelEnd < length ? nextTab(line, labelEnd + 1, length) : length;
+        int operandEnd = operatorEnd < length ? nextTab(line, operatorEnd + 1, length) : length;
+
+        //split과 같이 끝에 있는 빈 필드는 없는 것으로 취급
+        int fields;
+        if (operandEnd < length && operandEnd + 1 < length)
+            fields = 4;
+        else if (operatorEnd < length && operatorEnd + 1 < operandEnd)
+            fields = 3;
+        else if (labelEnd < length && labelEnd + 1 < operatorEnd)
+            fields = 2;
+        else
+            fields = 1;
+
+        //입력. 필드가 많을수록 앞의 필드도 모두 있다
+        if (fields >= 4)
+            commentBegin = operandEnd + 1;
+        if (fields >= 3)
+            operand = splitOperand(line, operatorEnd + 1, operandEnd);
+        if (fields >= 2)
+            operator = line.substring(labelEnd + 1, operatorEnd);
+        label = labelEnd == 0 ? "" : line.substring(0, labelEnd);
+    }
+
+    /**
+     * 주석을 리턴한다. 처음 호출될 때 원본 문장에서 잘라서 만든다.
+     *
+     * @return : 주석. 없으면 빈 문자열
+     */
+    public String getComment() {
+        if (comment == null)
+            comment = commentBegin < 0 ? "" : line.substring(commentBegin);
+        return comment;
+    }
+
+    /**
+     * 주석을 버리고 원본 문장에 대한 참조를 끊는다.
+     * streaming 방식으로 읽을 때 원본 문장이 토큰과 함께 메모리에 남지 않도록 한다.
+     */
+    public void discardComment() {
+        line = null;
+        commentBegin = -1;
+        comment = "";
+    }
+
+    private static final String[] EMPTY = new String[0];
+
+    /**
+     * line에서 from부터 end 사이의 첫번째 탭 위치를 찾는다.
+     *
+     * @return : 탭의 위치. 없으면 end
+     */
+    private static int nextTab(String line, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (line.charAt(i) == '\t')
+                return i;
+        }
+        return end;
+    }
+
+    /**
+     * line[begin, end) 범위의 operand를 쉼표로 나눈다. 결과는 String.split(",")과 같다.
+     */
+    private static String[] splitOperand(String line, int begin, int end) {
+        int count = 1;
+        for (int i = begin; i < end; i++) {
+            if (line.charAt(i) == ',')
+                count++;
+        }
+        if (count == 1)
+            return new String[]{line.substring(begin, end)};
+        //split과 같이 끝에 있는 빈 operand는 버린다
+        int last = end;
+        while (last > begin && line.charAt(last - 1) == ',') {
+            last--;
+            count--;
+        }
+        if (last == begin)
+            count = 0;
+        String[] result = new String[count];
+        int from = begin;
+        for (int n = 0; n < count; n++) {
+            int to = from;
+            while (to < last && line.charAt(to) != ',')
+                to++;
+            result[n] = line.substring(from, to);
+            from = to + 1;
         }
+        return result;
     }
 
     /**
@@ -408,4 +975,4 @@ class Token {
     public int getFlag(int flags) {
         return nixbpe & flags;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
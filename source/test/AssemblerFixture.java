@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 임시 디렉토리에서 어셈블러를 실행하는 테스트 도구.
+ * inst.data를 테스트 리소스에서 복사해 두므로, 어셈블러가 만드는 캐시(inst.data.bin)도 임시 디렉토리에 생긴다.
+ */
+final class AssemblerFixture {
+    private final Path dir;
+    private final Path instFile;
+
+    AssemblerFixture(Path dir) throws IOException {
+        this.dir = dir;
+        instFile = dir.resolve("inst.data");
+        try (InputStream in = resourceStream("inst.data")) {
+            Files.copy(in, instFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 임시 디렉토리에 복사한 inst.data
+     */
+    Path instFile() {
+        return instFile;
+    }
+
+    /**
+     * 테스트 리소스 파일의 내용
+     */
+    static String resource(String name) throws IOException {
+        try (InputStream in = resourceStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    private static InputStream resourceStream(String name) throws IOException {
+        InputStream in = AssemblerFixture.class.getResourceAsStream("/" + name);
+        if (in == null)
+            throw new IOException("test resource not found : " + name);
+        return in;
+    }
+
+    /**
+     * 줄들을 '\n'으로 이어 input 파일을 만든다. 각 줄은 label, operator, operand, comment를 tab으로 구분한다.
+     */
+    Path source(String... lines) throws IOException {
+        return write("input.txt", String.join("\n", lines) + "\n");
+    }
+
+    Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * two-pass로 어셈블한 object program
+     */
+    String assemble(Path inputFile) throws IOException {
+        Assembler assembler = new Assembler(instFile.toString());
+        assembler.assemble(inputFile.toString(), dir.resolve("symtab.txt").toString(),
+                dir.resolve("literaltab.txt").toString(), dir.resolve("output.txt").toString());
+        return Files.readString(dir.resolve("output.txt"), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * one-pass로 어셈블한 object program
+     */
+    String assembleOnePass(Path inputFile) throws IOException {
+        Assembler assembler = new Assembler(instFile.toString());
+        assembler.assembleOnePass(inputFile.toString(), dir.resolve("output_onepass.txt").toString());
+        return Files.readString(dir.resolve("output_onepass.txt"), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * two-pass와 one-pass 어셈블 결과 테스트.
+ * 같은 입력은 두 방식에서 같은 object program이 되어야 하므로 항상 두 방식을 함께 확인한다.
+ */
+class AssemblerTest {
+    @TempDir
+    Path dir;
+    private AssemblerFixture fixture;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fixture = new AssemblerFixture(dir);
+    }
+
+    /**
+     * 두 방식으로 어셈블하여 결과가 같은지 확인하고 그 결과를 리턴한다.
+     */
+    private String assembleBoth(String... lines) throws IOException {
+        Path input = fixture.source(lines);
+        String output = fixture.assemble(input);
+        assertEquals(output, fixture.assembleOnePass(input), "one-pass output");
+        return output;
+    }
+
+    /**
+     * 두 방식 모두 같은 메시지로 어셈블을 거부하는지 확인한다.
+     * section을 병렬로 처리하면 fork-join pool이 예외를 감싸서 다시 던지므로 메시지는 포함 여부만 본다.
+     */
+    private void assertRejected(String message, String... lines) throws IOException {
+        Path input = fixture.source(lines);
+        IllegalStateException twoPass = assertThrows(IllegalStateException.class, () -> fixture.assemble(input));
+        assertTrue(twoPass.getMessage().contains(message), twoPass.getMessage());
+        IllegalStateException onePass = assertThrows(IllegalStateException.class, () -> fixture.assembleOnePass(input));
+        assertTrue(onePass.getMessage().contains(message), onePass.getMessage());
+    }
+
+    @Test
+    void sampleProgramMatchesGoldenOutput() throws IOException {
+        Path input = fixture.write("input.txt", AssemblerFixture.resource("input.txt"));
+        String expected = AssemblerFixture.resource("output_20160290.txt");
+        assertEquals(expected, fixture.assemble(input));
+        assertEquals(expected, fixture.assembleOnePass(input));
+    }
+
+    @Test
+    void resolvesForwardEquate() throws IOException {
+        String output = assembleBoth(
+                "PROG\tSTART\t0",
+                "\tWORD\tSIZE*2",
+                "SIZE\tEQU\tLAST-FIRST",
+                "FIRST\tRESW\t3",
+                "LAST\tEQU\t*",
+                "\tWORD\tLAST",
+                "\tEND\tPROG");
+        assertEquals("HPROG  00000000000F\n"
+                + "T00000003000012\n"
+                + "T00000C0300000C\n"
+                + "M00000C06+PROG\n"
+                + "E000000\n\n", output);
+    }
+
+    @Test
+    void rejectsCircularEquate() throws IOException {
+        assertRejected("circular EQU",
+                "PROG\tSTART\t0",
+                "A\tEQU\tB+1",
+                "B\tEQU\tA-1",
+                "\tRSUB",
+                "\tEND\tPROG");
+    }
+
+    @Test
+    void rejectsUndefinedSymbolInEquate() throws IOException {
+        assertRejected("undefined symbol in EQU",
+                "PROG\tSTART\t0",
+                "A\tEQU\tNOPE+1",
+                "\tRSUB",
+                "\tEND\tPROG");
+        assertRejected("undefined symbol in EQU",
+                "PROG\tSTART\t0",
+                "\tEXTREF\tXA",
+                "A\tEQU\tXA",
+                "\tRSUB",
+                "\tEND\tPROG");
+    }
+
+    /**
+     * WORD의 식 : 같은 section의 차이는 절대값, 상대 주소 하나는 section 자신의 재배치, 외부 symbol은 부호대로 M 레코드.
+     */
+    @Test
+    void encodesWordDifferences() throws IOException {
+        String output = assembleBoth(
+                "PROG\tSTART\t0",
+                "\tEXTREF\tXA,XB",
+                "A\tRESW\t1",
+                "B\tRESW\t2",
+                "\tWORD\tB-A",
+                "\tWORD\tB",
+                "\tWORD\tXA-XB",
+                "\tWORD\tXA-A",
+                "\tEND\tPROG");
+        assertEquals("HPROG  000000000015\n"
+                + "RXA    XB    \n"
+                + "T0000090C000003000003000000000000\n"
+                + "M00000C06+PROG\n"
+                + "M00000F06+XA\n"
+                + "M00000F06-XB\n"
+                + "M00001206+XA\n"
+                + "M00001206-PROG\n"
+                + "E000000\n\n", output);
+    }
+}
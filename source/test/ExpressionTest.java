@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Expression의 해석, 계산, 상대 주소 판정 테스트.
+ */
+class ExpressionTest {
+    private SymbolTable symtab;
+
+    /**
+     * A, B는 상대 주소, C는 절대값(EQU 상수)이다. XA는 외부 symbol이므로 table에 없다.
+     */
+    @BeforeEach
+    void setUp() {
+        symtab = new SymbolTable();
+        symtab.putSymbol("A", 0x10);
+        symtab.putSymbol("B", 0x30);
+        symtab.putSymbol("C", 5);
+        symtab.setAbsolute("C", true);
+    }
+
+    private int evaluate(String text) {
+        return Expression.compile(text).evaluate(symtab, 0x100);
+    }
+
+    private int relocation(String text) {
+        return Expression.compile(text).relocation(symtab);
+    }
+
+    @Test
+    void evaluatesWithPrecedenceAndParentheses() {
+        assertEquals(14, evaluate("2+3*4"));
+        assertEquals(20, evaluate("(2+3)*4"));
+        assertEquals(6, evaluate("-4+10"));
+        assertEquals(3, evaluate("10/3"));
+        assertEquals(-3, evaluate("-(1+2)"));
+    }
+
+    @Test
+    void evaluatesSymbolsAndLocation() {
+        assertEquals(0x20, evaluate("B-A"));
+        assertEquals(0xFC, evaluate("*-4"));
+        assertEquals(0x100 - 0x10, evaluate("*-A"));
+        assertEquals(0x20 / 2 + 5, evaluate("(B-A)/2+C"));
+        //외부 symbol은 0으로 계산하고 M 레코드로 더한다
+        assertEquals(-0x10, evaluate("XA-A"));
+    }
+
+    @Test
+    void countsRelocatableTerms() {
+        assertEquals(0, relocation("B-A"));
+        assertEquals(1, relocation("A"));
+        assertEquals(1, relocation("A+C"));
+        assertEquals(2, relocation("A+B"));
+        assertEquals(-1, relocation("C-A"));
+        assertEquals(1, relocation("*"));
+        assertEquals(0, relocation("*-A"));
+        //* 또는 / 안의 항은 상대 주소로 세지 않는다
+        assertEquals(0, relocation("2*A"));
+        //외부 symbol은 세지 않는다
+        assertEquals(0, relocation("XA-XB"));
+    }
+
+    @Test
+    void recordsSignOfEachName() {
+        Expression expression = Expression.compile("XA-A+XA-(2*B)");
+        assertArrayEquals(new String[]{"XA", "A", "B"}, expression.nameList);
+        assertEquals(2, expression.signOf(0));
+        assertEquals(-1, expression.signOf(1));
+        assertEquals(0, expression.signOf(2));
+    }
+
+    @Test
+    void compilesToPostfix() {
+        assertEquals("A B - 2 *", Expression.compile("(A-B)*2").toString());
+        assertTrue(Expression.compile("42").isConstant());
+        assertFalse(Expression.compile("4+2").isConstant());
+    }
+
+    @Test
+    void rejectsInvalidSyntax() {
+        for (String text : new String[]{"", "A+", "(A", "A)", "1$", "*A"})
+            assertThrows(IllegalArgumentException.class, () -> Expression.compile(text), text);
+    }
+
+    @Test
+    void rejectsDivisionByZero() {
+        assertThrows(ArithmeticException.class, () -> evaluate("A/(B-B)"));
+    }
+}
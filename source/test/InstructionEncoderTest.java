@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InstructionEncoder의 레지스터 번호, nixbpe, displacement 계산 테스트.
+ */
+class InstructionEncoderTest {
+    @TempDir
+    Path dir;
+    private AssemblerFixture fixture;
+    private InstTable instTable;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fixture = new AssemblerFixture(dir);
+        instTable = new InstTable(fixture.instFile().toString());
+    }
+
+    private int encode(String operator, int byteSize, int mode, int location, int value) {
+        return InstructionEncoder.encode(instTable.search(operator), byteSize, mode, location, value);
+    }
+
+    @Test
+    void numbersRegisters() {
+        assertEquals(0, InstructionEncoder.register("A"));
+        assertEquals(1, InstructionEncoder.register("X"));
+        assertEquals(6, InstructionEncoder.register("F"));
+        assertEquals(8, InstructionEncoder.register("PC"));
+        assertEquals(9, InstructionEncoder.register("SW"));
+        assertEquals(-1, InstructionEncoder.register("Q"));
+        assertEquals(-1, InstructionEncoder.register("BUFFER"));
+    }
+
+    @Test
+    void encodesRegisterPairs() {
+        int pair = InstructionEncoder.registerPair(InstructionEncoder.register("F"), InstructionEncoder.register("X"), 2);
+        assertEquals(0x61, pair);
+        assertEquals(0xA061, encode("COMPR", 2, 0, 0, pair));
+        assertEquals(0x10, InstructionEncoder.registerPair(InstructionEncoder.register("X"), -1, 1));
+        assertEquals(0xB410, encode("CLEAR", 2, 0, 0, 0x10));
+    }
+
+    @Test
+    void rejectsMissingRegisters() {
+        assertThrows(IllegalArgumentException.class, () -> InstructionEncoder.registerPair(-1, -1, 1));
+        assertThrows(IllegalArgumentException.class, () -> InstructionEncoder.registerPair(0, -1, 2));
+    }
+
+    @Test
+    void encodesFormat3() {
+        //pc relative
+        assertEquals(0x03202D, encode("LDA", 3, 0, 0x000, 0x030));
+        assertEquals(0x3F2FED, encode("J", 3, 0, 0x020, 0x010));
+        //범위를 넘으면 base relative, displacement 0
+        assertEquals(0x034000, encode("LDA", 3, 0, 0x000, 0x1000));
+        //immediate, indirect
+        assertEquals(0x010003, encode("LDA", 3, TokenTable.MODE_IMMEDIATE, 0x000, 3));
+        assertEquals(0x3E2FED, encode("J", 3, TokenTable.MODE_INDIRECT, 0x020, 0x010));
+        //operand가 없는 명령어
+        assertEquals(0x4F0000, encode("RSUB", 3, 0, 0x000, -1));
+    }
+
+    @Test
+    void encodesFormat4() {
+        //외부 참조는 주소를 M 레코드로 채운다
+        assertEquals(0x4B100000, encode("+JSUB", 4, 0, 0x000, -1));
+        assertEquals(0x57900000, encode("+STCH", 4, TokenTable.MODE_INDEX, 0x000, -1));
+        assertEquals(0x01101000, encode("+LDA", 4, TokenTable.MODE_IMMEDIATE, 0x000, 0x1000));
+    }
+
+    @Test
+    void assemblesFormat2Operands() throws IOException {
+        Path input = fixture.source(
+                "PROG\tSTART\t0",
+                "\tCOMPR\tF,X",
+                "\tCLEAR\tX",
+                "\tRMO\tSW,PC",
+                "\tEND\tPROG");
+        String expected = "HPROG  000000000006\n"
+                + "T00000006A061B410AC98\n"
+                + "E000000\n\n";
+        assertEquals(expected, fixture.assemble(input));
+        assertEquals(expected, fixture.assembleOnePass(input));
+    }
+}
@@ -0,0 +1,139 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LinkingLoader의 배치, ESTAB, M 레코드 적용과 레코드 검사 테스트.
+ */
+class LinkingLoaderTest {
+    @TempDir
+    Path dir;
+
+    private static void load(LinkingLoader loader, String... records) {
+        loader.load((String.join("\r\n", records) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * memory[offset]부터 size byte를 정수로 읽는다.
+     */
+    private static int read(LinkingLoader loader, int offset, int size) {
+        int value = 0;
+        for (int i = 0; i < size; i++)
+            value = value << 8 | (loader.memory[offset + i] & 0xFF);
+        return value;
+    }
+
+    /**
+     * 두 section을 0x1000부터 이어서 배치한다. A는 0x1000, B는 0x1006에 놓인다.
+     */
+    @Test
+    void relocatesSectionsAndExternalReferences() {
+        LinkingLoader loader = new LinkingLoader(0x1000);
+        load(loader,
+                "HA     000000000006",
+                "DXA    000003",
+                "RXB    ",
+                "T00000006000000000003",
+                "M00000006+XB",
+                "M00000306",
+                "E000000",
+                "",
+                "HB     000000000003",
+                "DXB    000002",
+                "RXA    ",
+                "T0000000300000A",
+                "M00000006+XA",
+                "M00000006-B",
+                "E");
+        loader.link();
+
+        assertEquals("A", loader.programName);
+        assertEquals(2, loader.sectionCount);
+        assertEquals(9, loader.length);
+        assertEquals(0x1000, loader.entry);
+        assertEquals(0x1003, loader.estab.search("XA"));
+        assertEquals(0x1008, loader.estab.search("XB"));
+        assertEquals(0x1006, loader.estab.search("B"));
+        //XB, A + 3, 0xA + XA - B
+        assertEquals(0x001008, read(loader, 0, 3));
+        assertEquals(0x001003, read(loader, 3, 3));
+        assertEquals(0x000007, read(loader, 6, 3));
+    }
+
+    /**
+     * 홀수 자리(format 4의 주소)는 첫 byte의 상위 4bit를 지키고, 자리수를 넘는 값은 잘린다.
+     */
+    @Test
+    void masksModifiedFields() {
+        LinkingLoader loader = new LinkingLoader(0);
+        load(loader,
+                "HP     000000000007",
+                "DBIG   FFFFF0FIVE  000005",
+                "T000000074B100000000000",
+                "M00000105+BIG",
+                "M00000406-FIVE",
+                "E");
+        loader.link();
+
+        assertEquals(0x4B1FFFF0, read(loader, 0, 4));
+        assertEquals(0xFFFFFB, read(loader, 4, 3));
+    }
+
+    @Test
+    void linksAssembledProgram() throws IOException {
+        AssemblerFixture fixture = new AssemblerFixture(dir);
+        Path input = fixture.write("input.txt", AssemblerFixture.resource("input.txt"));
+        String output = fixture.assemble(input);
+
+        LinkingLoader loader = new LinkingLoader(0x1000);
+        loader.load(output.getBytes(StandardCharsets.US_ASCII));
+        loader.link();
+
+        assertEquals("COPY", loader.programName);
+        assertEquals(3, loader.sectionCount);
+        assertEquals(0x1033 + 0x2B + 0x1C, loader.length);
+        assertEquals(0x2033, loader.estab.search("RDREC"));
+        assertEquals(0x205E, loader.estab.search("WRREC"));
+        //CLOOP +JSUB RDREC
+        assertEquals(0x4B102033, read(loader, 3, 4));
+    }
+
+    @Test
+    void rejectsUnresolvedAndDuplicateSymbols() {
+        LinkingLoader undefined = new LinkingLoader(0);
+        load(undefined,
+                "HP     000000000003",
+                "T00000003000000",
+                "M00000006+NOPE",
+                "E");
+        assertThrows(IllegalStateException.class, undefined::link);
+
+        LinkingLoader duplicate = new LinkingLoader(0);
+        load(duplicate, "HP     000000000000", "DX     000000", "E");
+        assertThrows(IllegalStateException.class, () -> load(duplicate, "HQ     000000000000", "DX     000000", "E"));
+    }
+
+    @Test
+    void rejectsMalformedRecords() {
+        String header = "HP     000000000003";
+        String[][] programs = {
+                {"HP     0000"},                          //짧은 H 레코드
+                {"HP     00000G000003"},                  //16진수가 아닌 자리
+                {header, "DX     00"},                    //이름과 주소가 모자란 D 레코드
+                {header, "T0000000311223G"},              //16진수가 아닌 object code
+                {header, "T000000031122"},                //길이보다 짧은 object code
+                {header, "T00000003112233FF"},            //길이보다 긴 object code
+                {header, "M000000"},                      //짧은 M 레코드
+                {header, "M00000005*X"},                  //부호가 아닌 문자
+                {header, "E00"},                          //짧은 시작 주소
+        };
+        for (String[] program : programs)
+            assertThrows(IllegalArgumentException.class, () -> load(new LinkingLoader(0), program), Arrays.toString(program));
+    }
+}